@@ -0,0 +1,315 @@
+import org.apache.commons.cli.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+//Benchmarks of the phases of MuST on synthetic scale-free networks (see SyntheticNetwork). Like with JMH every
+//benchmark runs warmup iterations before the measured ones and reports mean and standard deviation per operation.
+//JMH itself does not fit this project: its generated code has to import the benchmark classes, and all classes of
+//MuST are in the default package.
+//Every combination of network size, seed count, weighted input and cores for the Dijkstra task is measured.
+//The steps are the ones of the CompactGraph pipeline of MultiSteinerTree; step 2 is Prim on the terminal closure.
+//A benchmark that changes its input gets a fresh one before every operation, made outside the measured time.
+//Like the forks of JMH every benchmark runs for every combination in its own JVM (-f), so the JIT does not compile
+//it with the profile of the benchmarks before. With -f 0 all benchmarks run in this JVM, then the order of the
+//benchmarks can change the results. Apart from the forks the results are only kept alive by a volatile field,
+//there is no Blackhole like in JMH.
+//The output of MuST is suppressed while measuring, the results are printed as a table.
+public class MuSTBenchmark {
+
+    //one operation on the input made by the setup of the benchmark, null for benchmarks without one
+    private interface Benchmark {
+        Object run(Fixture f, Object input) throws Exception;
+    }
+
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+    //makes a fresh input before every operation, outside the measured time
+    private static final Map<String, Function<Fixture, Object>> SETUPS = new HashMap<>();
+
+    static {
+        BENCHMARKS.put("parseAllNodesAndEdges", (f, input) -> f.gu.parseAllNodesAndEdges(f.networkFile.toString(), false));
+        BENCHMARKS.put("parseNetwork", (f, input) -> CompactGraph.fromParsedGraph(f.parsedGraph));
+        //on a copy without the component, so the component of the fixture stays known
+        SETUPS.put("inLCC", f -> {
+            CompactGraph copy = f.network.withEdgeWeights(new double[f.network.getEdgeCount()]);
+            copy.setLargestComponent(null);
+            return copy;
+        });
+        BENCHMARKS.put("inLCC", (f, copy) -> {
+            List<String> seeds = new ArrayList<>(f.seeds);
+            f.gu.inLCC(seeds, (CompactGraph) copy);
+            return seeds;
+        });
+        SETUPS.put("setEdgeWeight", f -> f.network.withEdgeWeights(new double[f.network.getEdgeCount()]));
+        BENCHMARKS.put("setEdgeWeight", (f, copy) -> {
+            GraphUtils.setEdgeWeight((CompactGraph) copy, 0.5, GraphUtils.getAvDeg((CompactGraph) copy));
+            return copy;
+        });
+        BENCHMARKS.put("step1", (f, input) -> f.steps().compactStep1(f.parallel, f.cores));
+        BENCHMARKS.put("step2", (f, input) -> f.closure.minimumSpanningTree());
+        BENCHMARKS.put("step3", (f, input) -> f.steps().compactStep3(f.mst));
+        BENCHMARKS.put("step4", (f, input) -> f.steps().compactStep4(f.pathEdges));
+        BENCHMARKS.put("step5", (f, input) -> {
+            MultiSteinerTree steps = f.steps();
+            steps.compactStep5(f.mstEdges);
+            return steps;
+        });
+        BENCHMARKS.put("singleTree", (f, input) -> new MultiSteinerTree(f.graph, f.terminals, f.parallel, f.cores));
+        BENCHMARKS.put("multiTree", (f, input) -> MuSTTask.computeParticipation(f.graph, f.terminals, f.multiTreeParameters, null, null, null));
+    }
+
+    //keeps the results alive, so the JIT cannot drop the work
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        Options opts = new Options();
+        opts.addOption("n", "nodes", true, "Network sizes, comma separated (default 2000,20000)");
+        opts.addOption("m", "edgesPerNode", true, "Edges of every new node of the synthetic network (default 3)");
+        opts.addOption("sc", "seedcount", true, "Seed counts, comma separated (default 20,100)");
+        opts.addOption("w", "weighted", true, "Weighted input, comma separated true/false (default false,true)");
+        opts.addOption("pd", "parallelDijkstra", true, "Cores for the Dijkstra task, comma separated; 1 runs without -pd (default 1 and the available processors)");
+        opts.addOption("t", "trees", true, "Number of trees of the multiTree benchmark (default 10)");
+        opts.addOption("b", "benchmarks", true, "Regular expression for the benchmarks to run (default all): " + String.join(", ", BENCHMARKS.keySet()));
+        opts.addOption("wi", "warmup", true, "Warmup iterations per benchmark (default 3)");
+        opts.addOption("i", "iterations", true, "Measured iterations per benchmark (default 5)");
+        opts.addOption("rs", "randomseed", true, "Random seed of the synthetic networks and seeds (default 42)");
+        opts.addOption("f", "forks", true, "JVMs per benchmark and combination, their iterations are reported together; 0 runs all benchmarks in this JVM (default 1)");
+        opts.addOption("r", "raw", false, "Print only the times of the measured iterations, used by the forks");
+
+        PrintStream out = System.out;
+        try {
+            CommandLine cl = new DefaultParser().parse(opts, args);
+            int availableProcessors = Runtime.getRuntime().availableProcessors();
+            List<Integer> sizes = parseInts(cl.getOptionValue("n", "2000,20000"));
+            List<Integer> seedCounts = parseInts(cl.getOptionValue("sc", "20,100"));
+            List<Integer> coreCounts = parseInts(cl.getOptionValue("pd", availableProcessors > 1 ? "1," + availableProcessors : "1"));
+            List<Boolean> weightedInputs = new ArrayList<>();
+            for (String w : cl.getOptionValue("w", "false,true").split(",")) {
+                weightedInputs.add(Boolean.parseBoolean(w.trim()));
+            }
+            int edgesPerNode = Integer.parseInt(cl.getOptionValue("m", "3"));
+            int trees = Integer.parseInt(cl.getOptionValue("t", "10"));
+            int warmup = Integer.parseInt(cl.getOptionValue("wi", "3"));
+            int iterations = Integer.parseInt(cl.getOptionValue("i", "5"));
+            long randomSeed = Long.parseLong(cl.getOptionValue("rs", "42"));
+            Pattern selected = Pattern.compile(cl.getOptionValue("b", ".*"));
+            int forks = Integer.parseInt(cl.getOptionValue("f", "1"));
+            boolean raw = cl.hasOption("r");
+            if (forks < 0)
+                throw new IllegalArgumentException("The number of forks must not be negative");
+
+            if (!raw)
+                out.println(String.format("%-22s %9s %6s %9s %6s %12s %12s", "benchmark", "nodes", "seeds", "weighted", "cores", "ms/op", "stdev"));
+            if (forks > 0) {
+                for (int size : sizes) {
+                    for (boolean weighted : weightedInputs) {
+                        for (int seedCount : seedCounts) {
+                            for (int cores : coreCounts) {
+                                for (String benchmark : BENCHMARKS.keySet()) {
+                                    if (!selected.matcher(benchmark).matches())
+                                        continue;
+                                    double[] millis = new double[0];
+                                    for (int i = 0; i < forks; i++) {
+                                        double[] forked = fork(Arrays.asList("-b", Pattern.quote(benchmark), "-n", String.valueOf(size), "-m", String.valueOf(edgesPerNode),
+                                                "-sc", String.valueOf(seedCount), "-w", String.valueOf(weighted), "-pd", String.valueOf(cores), "-t", String.valueOf(trees),
+                                                "-wi", String.valueOf(warmup), "-i", String.valueOf(iterations), "-rs", String.valueOf(randomSeed)));
+                                        double[] all = Arrays.copyOf(millis, millis.length + forked.length);
+                                        System.arraycopy(forked, 0, all, millis.length, forked.length);
+                                        millis = all;
+                                    }
+                                    out.println(row(benchmark, size, seedCount, weighted, cores, millis));
+                                }
+                            }
+                        }
+                    }
+                }
+                return;
+            }
+            Path directory = Files.createTempDirectory("must-bench");
+            try {
+                for (int size : sizes) {
+                    for (boolean weighted : weightedInputs) {
+                        Path networkFile = directory.resolve("network_" + size + (weighted ? "_w" : "") + ".tsv");
+                        SyntheticNetwork.writeNetwork(networkFile, size, edgesPerNode, weighted, randomSeed);
+                        for (int seedCount : seedCounts) {
+                            for (int cores : coreCounts) {
+                                System.setOut(new PrintStream(NULL_OUTPUT));
+                                Fixture f = new Fixture(networkFile, SyntheticNetwork.seeds(size, seedCount, randomSeed), cores, trees);
+                                for (Map.Entry<String, Benchmark> benchmark : BENCHMARKS.entrySet()) {
+                                    if (!selected.matcher(benchmark.getKey()).matches())
+                                        continue;
+                                    double[] millis = measure(benchmark.getValue(), SETUPS.get(benchmark.getKey()), f, warmup, iterations);
+                                    if (raw) {
+                                        StringJoiner times = new StringJoiner(" ");
+                                        for (double m : millis) {
+                                            times.add(String.valueOf(m));
+                                        }
+                                        out.println(times);
+                                    } else {
+                                        out.println(row(benchmark.getKey(), size, seedCount, weighted, cores, millis));
+                                    }
+                                }
+                                System.setOut(out);
+                            }
+                        }
+                        Files.delete(networkFile);
+                    }
+                }
+            } finally {
+                System.setOut(out);
+                Files.deleteIfExists(directory);
+            }
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("MuSTBenchmark", opts);
+            System.exit(1);
+        } catch (Exception e) {
+            System.setOut(out);
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    //runs the benchmark of the arguments in a new JVM with the options of this one and returns the times of its
+    //measured iterations. The fork prints them with -r as the last line of its output, its errors go to stderr
+    private static double[] fork(List<String> arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), MuSTBenchmark.class.getName(), "-f", "0", "-r"));
+        command.addAll(arguments);
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String times = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty())
+                    times = line;
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || times == null)
+            throw new IOException("The fork for " + String.join(" ", arguments) + " ended with exit code " + exitCode);
+        String[] values = times.trim().split(" ");
+        double[] millis = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            millis[i] = Double.parseDouble(values[i]);
+        }
+        return millis;
+    }
+
+    private static String row(String benchmark, int size, int seedCount, boolean weighted, int cores, double[] millis) {
+        return String.format(Locale.ROOT, "%-22s %9d %6d %9s %6d %12.3f %12.3f", benchmark, size, seedCount, weighted, cores, mean(millis), stdev(millis));
+    }
+
+    private static double[] measure(Benchmark benchmark, Function<Fixture, Object> setup, Fixture f, int warmup, int iterations) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            sink ^= System.identityHashCode(benchmark.run(f, setup != null ? setup.apply(f) : null));
+        }
+        double[] millis = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            Object input = setup != null ? setup.apply(f) : null;
+            long before = System.nanoTime();
+            Object result = benchmark.run(f, input);
+            millis[i] = (System.nanoTime() - before) / 1e6;
+            sink ^= System.identityHashCode(result);
+        }
+        return millis;
+    }
+
+    //the inputs of the benchmarks for one combination of the parameters, prepared like MuSTTask does
+    private static class Fixture {
+        final GraphUtils gu = new GraphUtils();
+        final Path networkFile;
+        final List<String> seeds;
+        final int cores;
+        final boolean parallel;
+        final ParsedGraph parsedGraph;
+        final CompactGraph network;
+        final CompactGraph graph;
+        final int[] terminals;
+        final MuSTParameters multiTreeParameters;
+
+        //the input of every step is the output of the step before
+        final TerminalClosure closure;
+        final List<TerminalLink> mst;
+        final int[] pathEdges;
+        final int[] mstEdges;
+
+        Fixture(Path networkFile, List<String> seeds, int cores, int trees) throws ParseException {
+            this.networkFile = networkFile;
+            this.seeds = seeds;
+            this.cores = cores;
+            this.parallel = cores > 1;
+
+            List<String> args = new ArrayList<>(Arrays.asList("-m", "-t", String.valueOf(trees)));
+            if (parallel)
+                args.addAll(Arrays.asList("-pd", "-ncd", String.valueOf(cores)));
+            Options options = new Options();
+            MuSTTask.createParameterOptions(options);
+            this.multiTreeParameters = MuSTParameters.fromCommandLine(new DefaultParser().parse(options, args.toArray(new String[0])));
+
+            this.parsedGraph = gu.parseAllNodesAndEdges(networkFile.toString(), false);
+            this.network = MuSTTask.getWorkingNetwork(CompactGraph.fromParsedGraph(parsedGraph), multiTreeParameters, gu);
+            this.terminals = MuSTTask.getTerminalNodes(network, seeds, multiTreeParameters, gu);
+            this.graph = MuSTTask.getWeightedGraph(network, multiTreeParameters);
+
+            this.closure = steps().compactStep1(parallel, cores);
+            this.mst = closure.minimumSpanningTree();
+            this.pathEdges = steps().compactStep3(mst);
+            this.mstEdges = steps().compactStep4(pathEdges);
+        }
+
+        //a MultiSteinerTree that has not run, for calling the steps one by one
+        MultiSteinerTree steps() {
+            return new MultiSteinerTree(graph, terminals, parallel, cores, ClosureMode.SINGLE_SOURCE, null, null, Cancellation.NONE, false);
+        }
+    }
+
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static List<Integer> parseInts(String value) {
+        List<Integer> values = new ArrayList<>();
+        for (String v : value.split(",")) {
+            values.add(Integer.parseInt(v.trim()));
+        }
+        return values;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double stdev(double[] values) {
+        if (values.length < 2)
+            return 0;
+        double mean = mean(values);
+        double sum = 0;
+        for (double v : values) {
+            sum += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
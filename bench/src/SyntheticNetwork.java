@@ -0,0 +1,122 @@
+import org.apache.commons.cli.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Scale-free networks for the benchmarks, built by Barabási-Albert preferential attachment: the network starts as
+//a clique of edgesPerNode + 1 nodes, every further node is linked to edgesPerNode distinct nodes that are chosen
+//with a probability proportional to their degree. The degrees follow a power law like in a PPI network.
+//The same parameters and random seed always give the same files, so different versions are measured on the same input
+public class SyntheticNetwork {
+
+    public static void main(String[] args) {
+        Options opts = new Options();
+        opts.addRequiredOption("n", "nodes", true, "Number of nodes of the network");
+        opts.addOption("m", "edgesPerNode", true, "Number of edges of every new node (default 3)");
+        opts.addOption("w", "weighted", false, "Write a weight column with random weights between 0.001 and 1");
+        opts.addOption("sc", "seedcount", true, "Number of seeds to select (default 50)");
+        opts.addOption("rs", "randomseed", true, "Random seed of the network and the seeds (default 42)");
+        opts.addRequiredOption("on", "outnetwork", true, "Path to the network file");
+        opts.addRequiredOption("os", "outseeds", true, "Path to the seed file");
+        try {
+            CommandLine cl = new DefaultParser().parse(opts, args);
+            int nrOfNodes = Integer.parseInt(cl.getOptionValue("n"));
+            int edgesPerNode = Integer.parseInt(cl.getOptionValue("m", "3"));
+            int nrOfSeeds = Integer.parseInt(cl.getOptionValue("sc", "50"));
+            long randomSeed = Long.parseLong(cl.getOptionValue("rs", "42"));
+            writeNetwork(Paths.get(cl.getOptionValue("on")), nrOfNodes, edgesPerNode, cl.hasOption("w"), randomSeed);
+            writeSeeds(Paths.get(cl.getOptionValue("os")), nrOfNodes, nrOfSeeds, randomSeed);
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("SyntheticNetwork", opts);
+            System.exit(1);
+        } catch (IOException io) {
+            System.err.println("Cannot write the network: " + io.getMessage());
+            System.exit(1);
+        }
+    }
+
+    //the name of the v-th node, shaped like a UniProt ID
+    public static String id(int v) {
+        return String.format("S%05d", v);
+    }
+
+    public static void writeNetwork(Path path, int nrOfNodes, int edgesPerNode, boolean weighted, long randomSeed) throws IOException {
+        if (edgesPerNode < 1 || nrOfNodes <= edgesPerNode)
+            throw new IllegalArgumentException("The network needs more nodes than edges per node");
+        Random rnd = new Random(randomSeed);
+
+        //every edge adds both of its nodes, so a uniform pick from the list is proportional to the degree
+        int initial = edgesPerNode + 1;
+        long nrOfEdges = (long) initial * edgesPerNode / 2 + (long) (nrOfNodes - initial) * edgesPerNode;
+        int[] endpoints = new int[Math.toIntExact(2 * nrOfEdges)];
+        int size = 0;
+        int[] chosen = new int[edgesPerNode];
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write(weighted ? "source\ttarget\tweight" : "source\ttarget");
+            writer.newLine();
+            for (int u = 0; u < initial; u++) {
+                for (int v = u + 1; v < initial; v++) {
+                    writeEdge(writer, u, v, weighted, rnd);
+                    endpoints[size++] = u;
+                    endpoints[size++] = v;
+                }
+            }
+            for (int u = initial; u < nrOfNodes; u++) {
+                int nrOfChosen = 0;
+                while (nrOfChosen < edgesPerNode) {
+                    int v = endpoints[rnd.nextInt(size)];
+                    boolean known = false;
+                    for (int i = 0; i < nrOfChosen; i++) {
+                        known |= chosen[i] == v;
+                    }
+                    if (!known)
+                        chosen[nrOfChosen++] = v;
+                }
+                for (int i = 0; i < edgesPerNode; i++) {
+                    writeEdge(writer, u, chosen[i], weighted, rnd);
+                    endpoints[size++] = u;
+                    endpoints[size++] = chosen[i];
+                }
+            }
+        }
+    }
+
+    private static void writeEdge(BufferedWriter writer, int u, int v, boolean weighted, Random rnd) throws IOException {
+        writer.write(id(u) + "\t" + id(v));
+        if (weighted)
+            writer.write("\t" + (rnd.nextInt(1000) + 1) / 1000.0);
+        writer.newLine();
+    }
+
+    //nrOfSeeds distinct nodes, drawn uniformly
+    public static List<String> seeds(int nrOfNodes, int nrOfSeeds, long randomSeed) {
+        if (nrOfSeeds > nrOfNodes)
+            throw new IllegalArgumentException("There are not so many nodes for the seeds");
+        Random rnd = new Random(randomSeed);
+        int[] nodes = new int[nrOfNodes];
+        for (int v = 0; v < nrOfNodes; v++) {
+            nodes[v] = v;
+        }
+        List<String> seeds = new ArrayList<>(nrOfSeeds);
+        for (int i = 0; i < nrOfSeeds; i++) {
+            int j = i + rnd.nextInt(nrOfNodes - i);
+            int tmp = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = tmp;
+            seeds.add(id(nodes[i]));
+        }
+        return seeds;
+    }
+
+    public static void writeSeeds(Path path, int nrOfNodes, int nrOfSeeds, long randomSeed) throws IOException {
+        Files.write(path, seeds(nrOfNodes, nrOfSeeds, randomSeed));
+    }
+}
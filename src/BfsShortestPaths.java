@@ -0,0 +1,41 @@
+//Breadth-first search for networks in which every edge has the same weight, e.g. files without a weight column.
+//The distances are summed up edge by edge like in Dijkstra, so they are bit-identical.
+public class BfsShortestPaths extends LazyPredecessorPaths {
+
+    private final double weight;
+
+    public BfsShortestPaths(CompactGraph graph, double weight) {
+        super(graph);
+        this.weight = weight;
+    }
+
+    @Override
+    public void run(int source, int[] targets) {
+        reset();
+        this.source = source;
+        int remaining = markTargets(targets);
+
+        //the touched nodes in discovery order are the BFS queue
+        dist[source] = 0;
+        touched[nrOfTouched++] = source;
+        int head = 0;
+        while (head < nrOfTouched && remaining > 0) {
+            int u = touched[head++];
+            if (isTarget[u]) {
+                isTarget[u] = false;
+                remaining--;
+            }
+            double dv = dist[u] + weight;
+            for (int slot = graph.getOffset(u), end = graph.getOffset(u + 1); slot < end; slot++) {
+                int v = graph.getNeighbour(slot);
+                if (dist[v] == Double.POSITIVE_INFINITY) {
+                    dist[v] = dv;
+                    touched[nrOfTouched++] = v;
+                }
+            }
+        }
+        //every touched node was queued once, head of them were taken from the queue
+        Metrics.countSearch(head, nrOfTouched + head);
+        unmarkTargets(targets);
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+//Dial's algorithm: Dijkstra with a circular bucket queue for small positive integer weights
+public class BucketShortestPaths extends LazyPredecessorPaths {
+
+    public static final int MAX_BUCKET_WEIGHT = 1024;
+
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+    private final boolean[] settled;
+
+    public BucketShortestPaths(CompactGraph graph, int maxWeight) {
+        super(graph);
+        this.buckets = new int[maxWeight + 1][];
+        this.bucketSizes = new int[maxWeight + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new int[4];
+        }
+        this.settled = new boolean[graph.getNodeCount()];
+    }
+
+    @Override
+    protected void reset() {
+        for (int i = 0; i < nrOfTouched; i++) {
+            settled[touched[i]] = false;
+        }
+        super.reset();
+        Arrays.fill(bucketSizes, 0);
+    }
+
+    @Override
+    public void run(int source, int[] targets) {
+        reset();
+        this.source = source;
+        int remaining = markTargets(targets);
+
+        dist[source] = 0;
+        touched[nrOfTouched++] = source;
+        push(0, source);
+        int queued = 1;
+        long current = 0;
+        long settledNodes = 0;
+        long queueOperations = 1;
+        while (queued > 0 && remaining > 0) {
+            int b = (int) (current % buckets.length);
+            if (bucketSizes[b] == 0) {
+                current++;
+                continue;
+            }
+            int u = buckets[b][--bucketSizes[b]];
+            queued--;
+            queueOperations++;
+            //outdated entries of nodes whose distance was lowered later
+            if (settled[u] || dist[u] != current)
+                continue;
+            settled[u] = true;
+            settledNodes++;
+            if (isTarget[u]) {
+                isTarget[u] = false;
+                remaining--;
+            }
+            for (int slot = graph.getOffset(u), end = graph.getOffset(u + 1); slot < end; slot++) {
+                int v = graph.getNeighbour(slot);
+                double alt = dist[u] + graph.getSlotWeight(slot);
+                if (alt < dist[v]) {
+                    if (dist[v] == Double.POSITIVE_INFINITY)
+                        touched[nrOfTouched++] = v;
+                    dist[v] = alt;
+                    push((int) (((long) alt) % buckets.length), v);
+                    queued++;
+                    queueOperations++;
+                }
+            }
+        }
+        Metrics.countSearch(settledNodes, queueOperations);
+        unmarkTargets(targets);
+    }
+
+    private void push(int b, int v) {
+        if (bucketSizes[b] == buckets[b].length)
+            buckets[b] = Arrays.copyOf(buckets[b], 2 * buckets[b].length);
+        buckets[b][bucketSizes[b]++] = v;
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.concurrent.CancellationException;
+
+//Cooperative cancellation of one job: the work checks it between its tasks (a terminal, an iteration) and stops with
+//a CancellationException once the job was cancelled or its timeout has passed
+public class Cancellation {
+
+    //never cancelled
+    public static final Cancellation NONE = new Cancellation(0);
+
+    //System.nanoTime() at the timeout, only if there is one
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+
+    //a timeout of 0 means no timeout
+    public Cancellation(long timeoutMillis) {
+        this.hasDeadline = timeoutMillis > 0;
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+    }
+
+    public void cancel() {
+        if (this != NONE)
+            cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (hasDeadline && System.nanoTime() - deadline > 0);
+    }
+
+    public void check() {
+        if (cancelled)
+            throw new CancellationException("The computation was cancelled");
+        if (hasDeadline && System.nanoTime() - deadline > 0)
+            throw new CancellationException("The computation exceeded its timeout");
+    }
+}
@@ -0,0 +1,9 @@
+//How step 1 computes the shortest paths between the terminals
+public enum ClosureMode {
+    //one point-to-point Dijkstra per pair of terminals
+    PAIRWISE,
+    //one Dijkstra per terminal that stops once all other terminals are settled
+    SINGLE_SOURCE,
+    //Mehlhorn: one multi-source Dijkstra, the terminal graph only holds the bridges between Voronoi regions
+    VORONOI
+}
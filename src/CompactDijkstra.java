@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+//Dijkstra on the CompactGraph, the counterpart of jgrapht's DijkstraShortestPath.findPathBetween.
+//A node keeps the predecessor that reached it first, ties in the heap are broken by the smaller rank.
+public class CompactDijkstra implements ShortestPathEngine {
+
+    private final CompactGraph graph;
+    private final double[] dist;
+    private final int[] predEdge;
+    private final IndexedMinHeap heap;
+
+    //only the nodes reached by the last search are reset before the next one
+    private final int[] touched;
+    private int nrOfTouched;
+
+    private final boolean[] isTarget;
+    private int source = -1;
+
+    public CompactDijkstra(CompactGraph graph) {
+        this.graph = graph;
+        this.dist = new double[graph.getNodeCount()];
+        this.predEdge = new int[graph.getNodeCount()];
+        this.heap = new IndexedMinHeap(graph.getNodeCount(), graph.getRanks());
+        this.touched = new int[graph.getNodeCount()];
+        this.isTarget = new boolean[graph.getNodeCount()];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(predEdge, -1);
+    }
+
+    @Override
+    public void run(int source, int[] targets) {
+        reset();
+        this.source = source;
+
+        int remaining = 0;
+        for (int t : targets) {
+            if (!isTarget[t]) {
+                isTarget[t] = true;
+                remaining++;
+            }
+        }
+
+        touch(source, 0, -1);
+        heap.insertOrDecrease(source, 0);
+        long settled = 0;
+        long heapOperations = 1;
+        while (!heap.isEmpty() && remaining > 0) {
+            int u = heap.poll();
+            settled++;
+            heapOperations++;
+            if (isTarget[u]) {
+                isTarget[u] = false;
+                remaining--;
+            }
+            double du = dist[u];
+            for (int slot = graph.getOffset(u), end = graph.getOffset(u + 1); slot < end; slot++) {
+                int v = graph.getNeighbour(slot);
+                double alt = du + graph.getSlotWeight(slot);
+                if (alt < dist[v]) {
+                    touch(v, alt, graph.getAdjacentEdge(slot));
+                    heap.insertOrDecrease(v, alt);
+                    heapOperations++;
+                }
+            }
+        }
+        heap.clear();
+        Metrics.countSearch(settled, heapOperations);
+        for (int t : targets) {
+            isTarget[t] = false;
+        }
+    }
+
+    private void touch(int v, double d, int e) {
+        if (dist[v] == Double.POSITIVE_INFINITY)
+            touched[nrOfTouched++] = v;
+        dist[v] = d;
+        predEdge[v] = e;
+    }
+
+    private void reset() {
+        for (int i = 0; i < nrOfTouched; i++) {
+            dist[touched[i]] = Double.POSITIVE_INFINITY;
+            predEdge[touched[i]] = -1;
+        }
+        nrOfTouched = 0;
+    }
+
+    @Override
+    public double getDistance(int target) {
+        return dist[target];
+    }
+
+    @Override
+    public int getPredecessorEdge(int v) {
+        return predEdge[v];
+    }
+
+    @Override
+    public CompactPath getPath(int target) {
+        if (dist[target] == Double.POSITIVE_INFINITY)
+            return null;
+        int length = 0;
+        for (int v = target; v != source; v = graph.getOtherEnd(predEdge[v], v)) {
+            length++;
+        }
+        int[] edges = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            edges[i] = predEdge[v];
+            v = graph.getOtherEnd(predEdge[v], v);
+        }
+        return new CompactPath(dist[target], edges);
+    }
+}
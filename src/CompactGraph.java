@@ -0,0 +1,505 @@
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Compressed sparse row representation of the undirected network.
+//Nodes and edges are int IDs, the UniProt IDs are only needed again when writing the results.
+//A permuted view shares all arrays with its base graph and only changes the node order used for tie-breaking.
+//setEdgeWeights gives the graph new weight arrays, so views made before keep the weights they were made with.
+public class CompactGraph {
+
+    private final String[] uniprotIDs;
+    private final Map<String, Integer> nodeIndex;
+
+    //CSR adjacency: the neighbours of node v are targets[offsets[v]] ... targets[offsets[v + 1] - 1]
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] adjacentEdges;
+    //not final: setEdgeWeights replaces the weight arrays instead of writing into the ones views share
+    private double[] weights;
+
+    //one entry per undirected edge, oriented as in the network file
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+    private double[] edgeWeight;
+
+    //node order for tie-breaking: order[i] is the i-th node, rank[v] the position of node v
+    private final int[] order;
+    private final int[] rank;
+
+    //weight classes that allow a faster shortest path engine, see ShortestPathEngine.forGraph
+    private double uniformWeight;
+    private int maxIntegerWeight;
+    private double minWeight;
+
+    //membership of the largest connected component, filled by the NetworkParser, GraphUtils.inLCC or a NetworkSnapshot
+    private boolean[] largestComponent;
+    private volatile CompactGraph largestComponentGraph;
+
+    //for a graph restricted to the largest connected component: the IDs of its nodes in the parsed network,
+    //the number of nodes of the parsed network and its average degree, null, 0 and NaN otherwise
+    private int[] parsedIDs;
+    private int parsedNodeCount;
+    private double parsedAverageDegree = Double.NaN;
+
+    //identifies the nodes and edges, shared by views and weighted copies; the weights are identified by their hash
+    private static final AtomicLong nextTopologyId = new AtomicLong();
+    private final long topologyId;
+    private volatile long weightsHash;
+    private volatile boolean weightsHashed;
+
+    private CompactGraph(String[] uniprotIDs, Map<String, Integer> nodeIndex, int[] offsets, int[] targets, int[] adjacentEdges, int[] edgeSource, int[] edgeTarget, double[] edgeWeight) {
+        this.uniprotIDs = uniprotIDs;
+        this.nodeIndex = nodeIndex;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.adjacentEdges = adjacentEdges;
+        this.weights = new double[targets.length];
+        this.edgeSource = edgeSource;
+        this.edgeTarget = edgeTarget;
+        this.edgeWeight = edgeWeight;
+
+        int n = uniprotIDs.length;
+        this.order = new int[n];
+        for (int v = 0; v < n; v++) {
+            order[v] = v;
+        }
+        this.rank = order;
+        this.topologyId = nextTopologyId.getAndIncrement();
+        updateAdjacencyWeights();
+    }
+
+    private CompactGraph(CompactGraph base, int[] order) {
+        this.uniprotIDs = base.uniprotIDs;
+        this.nodeIndex = base.nodeIndex;
+        this.offsets = base.offsets;
+        this.targets = base.targets;
+        this.adjacentEdges = base.adjacentEdges;
+        this.weights = base.weights;
+        this.edgeSource = base.edgeSource;
+        this.edgeTarget = base.edgeTarget;
+        this.edgeWeight = base.edgeWeight;
+        this.uniformWeight = base.uniformWeight;
+        this.maxIntegerWeight = base.maxIntegerWeight;
+        this.minWeight = base.minWeight;
+        this.largestComponent = base.largestComponent;
+        copyRestriction(base);
+        this.topologyId = base.topologyId;
+        this.order = order;
+        this.rank = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+    }
+
+    private CompactGraph(CompactGraph base, double[] edgeWeight) {
+        this.uniprotIDs = base.uniprotIDs;
+        this.nodeIndex = base.nodeIndex;
+        this.offsets = base.offsets;
+        this.targets = base.targets;
+        this.adjacentEdges = base.adjacentEdges;
+        this.weights = new double[base.targets.length];
+        this.edgeSource = base.edgeSource;
+        this.edgeTarget = base.edgeTarget;
+        this.edgeWeight = edgeWeight;
+        this.largestComponent = base.largestComponent;
+        copyRestriction(base);
+        this.order = base.order;
+        this.rank = base.rank;
+        this.topologyId = base.topologyId;
+        updateAdjacencyWeights();
+    }
+
+    //graph with the same nodes, edges and node order but its own edge weights; the base graph is not changed
+    public CompactGraph withEdgeWeights(double[] newWeights) {
+        return new CompactGraph(this, newWeights.clone());
+    }
+
+    //view in which the nodes come in the given order, as if the graph had been parsed from the proteins in that order.
+    //Weight changes of the base graph after this call are not seen by the view
+    public CompactGraph permuted(int[] order) {
+        return new CompactGraph(this, order);
+    }
+
+    //view with the node order shuffled exactly like Collections.shuffle(proteins, rnd) would shuffle the protein list.
+    //For the largest connected component the dropped nodes take part in the shuffle as placeholders, so the nodes
+    //of the component get the same relative order as in a shuffle of the whole network
+    public CompactGraph shuffled(Random rnd) {
+        if (parsedIDs == null) {
+            int[] shuffledOrder = this.order.clone();
+            shuffle(shuffledOrder, rnd);
+            return permuted(shuffledOrder);
+        }
+        int[] parsedOrder = new int[parsedNodeCount];
+        Arrays.fill(parsedOrder, -1);
+        for (int i = 0; i < order.length; i++) {
+            parsedOrder[parsedIDs[i]] = order[i];
+        }
+        shuffle(parsedOrder, rnd);
+        int[] shuffledOrder = new int[order.length];
+        int k = 0;
+        for (int v : parsedOrder) {
+            if (v != -1)
+                shuffledOrder[k++] = v;
+        }
+        return permuted(shuffledOrder);
+    }
+
+    private static void shuffle(int[] a, Random rnd) {
+        for (int i = a.length; i > 1; i--) {
+            int j = rnd.nextInt(i);
+            int tmp = a[i - 1];
+            a[i - 1] = a[j];
+            a[j] = tmp;
+        }
+    }
+
+    //The largest connected component as a graph of its own: the small components are dropped, the nodes and edges
+    //keep their order. It is built once and shared by all computations on this graph; a connected graph is returned
+    //as it is
+    public CompactGraph getLargestComponentGraph() {
+        CompactGraph lcc = largestComponentGraph;
+        if (lcc == null) {
+            synchronized (this) {
+                if (largestComponentGraph == null)
+                    largestComponentGraph = buildLargestComponentGraph();
+                lcc = largestComponentGraph;
+            }
+        }
+        return lcc;
+    }
+
+    private CompactGraph buildLargestComponentGraph() {
+        if (largestComponent == null)
+            largestComponent = GraphUtils.findLargestComponent(this);
+        int n = getNodeCount();
+        int[] newID = new int[n];
+        int nLcc = 0;
+        for (int v = 0; v < n; v++) {
+            newID[v] = largestComponent[v] ? nLcc++ : -1;
+        }
+        if (nLcc == n)
+            return this;
+
+        String[] lccUniprotIDs = new String[nLcc];
+        int[] lccParsedIDs = new int[nLcc];
+        Map<String, Integer> lccNodeIndex = new HashMap<>(nLcc * 2);
+        for (int v = 0; v < n; v++) {
+            if (newID[v] != -1) {
+                lccUniprotIDs[newID[v]] = uniprotIDs[v];
+                lccParsedIDs[newID[v]] = parsedIDs != null ? parsedIDs[v] : v;
+                lccNodeIndex.put(uniprotIDs[v], newID[v]);
+            }
+        }
+        int m = 0;
+        for (int e = 0; e < edgeSource.length; e++) {
+            if (newID[edgeSource[e]] != -1)
+                m++;
+        }
+        int[] src = new int[m];
+        int[] targ = new int[m];
+        double[] w = new double[m];
+        m = 0;
+        for (int e = 0; e < edgeSource.length; e++) {
+            if (newID[edgeSource[e]] != -1) {
+                src[m] = newID[edgeSource[e]];
+                targ[m] = newID[edgeTarget[e]];
+                w[m] = edgeWeight[e];
+                m++;
+            }
+        }
+
+        CompactGraph lcc = fromEdges(lccUniprotIDs, lccNodeIndex, src, targ, w);
+        lcc.parsedIDs = lccParsedIDs;
+        lcc.parsedNodeCount = parsedIDs != null ? parsedNodeCount : n;
+        lcc.parsedAverageDegree = GraphUtils.getAvDeg(this);
+        lcc.largestComponent = new boolean[nLcc];
+        Arrays.fill(lcc.largestComponent, true);
+        lcc.largestComponentGraph = lcc;
+        return lcc;
+    }
+
+    private void copyRestriction(CompactGraph base) {
+        this.parsedIDs = base.parsedIDs;
+        this.parsedNodeCount = base.parsedNodeCount;
+        this.parsedAverageDegree = base.parsedAverageDegree;
+    }
+
+    //CSR arrays read back from a NetworkSnapshot
+    public static CompactGraph fromArrays(String[] uniprotIDs, int[] offsets, int[] targets, int[] adjacentEdges, int[] edgeSource, int[] edgeTarget, double[] edgeWeight) {
+        Map<String, Integer> nodeIndex = new HashMap<>(uniprotIDs.length * 2);
+        for (int v = 0; v < uniprotIDs.length; v++) {
+            nodeIndex.put(uniprotIDs[v], v);
+        }
+        return new CompactGraph(uniprotIDs, nodeIndex, offsets, targets, adjacentEdges, edgeSource, edgeTarget, edgeWeight);
+    }
+
+    //with the largest connected component found by the NetworkParser
+    public static CompactGraph fromParsedGraph(ParsedGraph parsedGraph) {
+        CompactGraph graph = fromParsedGraph(parsedGraph.getNodes(), parsedGraph.getEdges());
+        graph.setLargestComponent(parsedGraph.getLargestComponent());
+        return graph;
+    }
+
+    //Same semantics as GraphUtils.parseNetwork: the node order follows the protein list and,
+    //like the SimpleWeightedGraph, only the first of several parallel edges is kept
+    public static CompactGraph fromParsedGraph(List<String> proteins, Map<String, ParsedEdge> parsedEdges) {
+        String[] uniprotIDs = proteins.toArray(new String[0]);
+        Map<String, Integer> nodeIndex = new HashMap<>(uniprotIDs.length * 2);
+        for (int v = 0; v < uniprotIDs.length; v++) {
+            nodeIndex.put(uniprotIDs[v], v);
+        }
+
+        int[] src = new int[parsedEdges.size()];
+        int[] targ = new int[parsedEdges.size()];
+        double[] w = new double[parsedEdges.size()];
+        Set<Long> seen = new HashSet<>(parsedEdges.size() * 2);
+        int m = 0;
+        for (ParsedEdge pe : parsedEdges.values()) {
+            int s = nodeIndex.get(pe.getSourceNode());
+            int t = nodeIndex.get(pe.getTargetNode());
+            if (!seen.add(pairKey(s, t)))
+                continue;
+            src[m] = s;
+            targ[m] = t;
+            w[m] = pe.getWeight();
+            m++;
+        }
+        return fromEdges(uniprotIDs, nodeIndex, Arrays.copyOf(src, m), Arrays.copyOf(targ, m), Arrays.copyOf(w, m));
+    }
+
+    //graph of the given edge list, e.g. a SteinerReduction; the node order follows the UniProt IDs
+    public static CompactGraph fromEdges(String[] uniprotIDs, int[] edgeSource, int[] edgeTarget, double[] edgeWeight) {
+        Map<String, Integer> nodeIndex = new HashMap<>(uniprotIDs.length * 2);
+        for (int v = 0; v < uniprotIDs.length; v++) {
+            nodeIndex.put(uniprotIDs[v], v);
+        }
+        return fromEdges(uniprotIDs, nodeIndex, edgeSource, edgeTarget, edgeWeight);
+    }
+
+    //builds the CSR adjacency from the edge list, the neighbours of a node are in edge order
+    private static CompactGraph fromEdges(String[] uniprotIDs, Map<String, Integer> nodeIndex, int[] edgeSource, int[] edgeTarget, double[] edgeWeight) {
+        int n = uniprotIDs.length;
+        int m = edgeSource.length;
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            offsets[edgeSource[e] + 1]++;
+            offsets[edgeTarget[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] targets = new int[2 * m];
+        int[] adjacentEdges = new int[2 * m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < m; e++) {
+            int s = edgeSource[e];
+            int t = edgeTarget[e];
+            targets[next[s]] = t;
+            adjacentEdges[next[s]++] = e;
+            targets[next[t]] = s;
+            adjacentEdges[next[t]++] = e;
+        }
+        return new CompactGraph(uniprotIDs, nodeIndex, offsets, targets, adjacentEdges, edgeSource, edgeTarget, edgeWeight);
+    }
+
+    private static long pairKey(int a, int b) {
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        return ((long) lo << 32) | (hi & 0xffffffffL);
+    }
+
+    private void updateAdjacencyWeights() {
+        for (int i = 0; i < adjacentEdges.length; i++) {
+            weights[i] = edgeWeight[adjacentEdges[i]];
+        }
+
+        uniformWeight = edgeWeight.length > 0 ? edgeWeight[0] : 1.0;
+        maxIntegerWeight = 0;
+        minWeight = Double.POSITIVE_INFINITY;
+        for (double w : edgeWeight) {
+            minWeight = Math.min(minWeight, w);
+            if (w != uniformWeight)
+                uniformWeight = -1;
+            if (maxIntegerWeight != -1) {
+                if (w >= 1 && w <= Integer.MAX_VALUE && w == Math.rint(w))
+                    maxIntegerWeight = Math.max(maxIntegerWeight, (int) w);
+                else
+                    maxIntegerWeight = -1;
+            }
+        }
+    }
+
+    //the weight shared by all edges, or -1 if the weights differ
+    public double getUniformWeight() {
+        return uniformWeight;
+    }
+
+    //the largest weight if all weights are positive integers, otherwise -1
+    public int getMaxIntegerWeight() {
+        return maxIntegerWeight;
+    }
+
+    public double getMinWeight() {
+        return minWeight;
+    }
+
+    //position of node v in the node order, used to break ties between equally short paths
+    public int getRank(int v) {
+        return rank[v];
+    }
+
+    public int[] getRanks() {
+        return rank;
+    }
+
+    public boolean[] getLargestComponent() {
+        return largestComponent;
+    }
+
+    public void setLargestComponent(boolean[] largestComponent) {
+        this.largestComponent = largestComponent;
+    }
+
+    //the average degree of the parsed network if this is its largest connected component, otherwise NaN
+    public double getParsedAverageDegree() {
+        return parsedAverageDegree;
+    }
+
+    public int getNodeCount() {
+        return uniprotIDs.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeSource.length;
+    }
+
+    public int getDegree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int getOffset(int v) {
+        return offsets[v];
+    }
+
+    public int getNeighbour(int slot) {
+        return targets[slot];
+    }
+
+    public int getAdjacentEdge(int slot) {
+        return adjacentEdges[slot];
+    }
+
+    public double getSlotWeight(int slot) {
+        return weights[slot];
+    }
+
+    public int getEdgeSource(int e) {
+        return edgeSource[e];
+    }
+
+    public int getEdgeTarget(int e) {
+        return edgeTarget[e];
+    }
+
+    public double getEdgeWeight(int e) {
+        return edgeWeight[e];
+    }
+
+    public int getOtherEnd(int e, int v) {
+        return edgeSource[e] == v ? edgeTarget[e] : edgeSource[e];
+    }
+
+    //replaces all edge weights at once, e.g. for the hub penalty. The weights go into new arrays: views of this graph
+    //share the old ones, and keep them together with their weight classes and weights hash
+    public void setEdgeWeights(double[] newWeights) {
+        if (newWeights.length != edgeWeight.length)
+            throw new IllegalArgumentException("Expected " + edgeWeight.length + " edge weights, got " + newWeights.length);
+        edgeWeight = newWeights.clone();
+        weights = new double[targets.length];
+        updateAdjacencyWeights();
+        weightsHashed = false;
+    }
+
+    public long getTopologyId() {
+        return topologyId;
+    }
+
+    //64 bit hash of the edge weights, computed on first use
+    public long getWeightsHash() {
+        if (!weightsHashed) {
+            long h = 0x9E3779B97F4A7C15L;
+            for (double w : edgeWeight) {
+                h = (h ^ Double.doubleToLongBits(w)) * 0xBF58476D1CE4E5B9L;
+                h ^= h >>> 31;
+            }
+            weightsHash = h;
+            weightsHashed = true;
+        }
+        return weightsHash;
+    }
+
+    public String getUniprotID(int v) {
+        return uniprotIDs[v];
+    }
+
+    public int indexOf(String uniprotID) {
+        Integer v = nodeIndex.get(uniprotID);
+        return v == null ? -1 : v;
+    }
+
+    //terminal IDs in node order, which is the order GraphUtils.parseNetwork returns them in
+    public int[] getTerminalIndices(List<String> terminalNodesStrings) {
+        Set<String> terminalSet = new HashSet<>(terminalNodesStrings);
+        int[] terminals = new int[terminalSet.size()];
+        int k = 0;
+        for (int v : order) {
+            if (terminalSet.contains(uniprotIDs[v])) {
+                terminals[k++] = v;
+            }
+        }
+        return Arrays.copyOf(terminals, k);
+    }
+
+    //the given nodes sorted by their position in the node order
+    public int[] inNodeOrder(int[] nodes) {
+        long[] keyed = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            keyed[i] = ((long) rank[nodes[i]] << 32) | nodes[i];
+        }
+        Arrays.sort(keyed);
+        int[] sorted = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            sorted[i] = (int) keyed[i];
+        }
+        return sorted;
+    }
+
+    //mapping back to the UniProt IDs, only used when the results are written
+    public Vertex toVertex(int v) {
+        return new Vertex(uniprotIDs[v]);
+    }
+
+    public Link toLink(int e) {
+        return new Link(toVertex(edgeSource[e]), toVertex(edgeTarget[e]), edgeWeight[e]);
+    }
+
+    public SimpleWeightedGraph<Vertex, Link> toSimpleWeightedGraph(int[] nodes, int[] edges) {
+        SimpleWeightedGraph<Vertex, Link> g = new SimpleWeightedGraph<>(Link.class);
+        Map<Integer, Vertex> vertices = new HashMap<>();
+        for (int v : nodes) {
+            Vertex vertex = toVertex(v);
+            vertices.put(v, vertex);
+            g.addVertex(vertex);
+        }
+        for (int e : edges) {
+            Vertex src = vertices.get(edgeSource[e]);
+            Vertex targ = vertices.get(edgeTarget[e]);
+            Link l = new Link(src, targ, edgeWeight[e]);
+            g.addEdge(src, targ, l);
+            g.setEdgeWeight(l, edgeWeight[e]);
+        }
+        return g;
+    }
+}
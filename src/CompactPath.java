@@ -0,0 +1,19 @@
+//A shortest path in the CompactGraph as a list of edge IDs
+public class CompactPath {
+
+    private final double weight;
+    private final int[] edges;
+
+    public CompactPath(double weight, int[] edges) {
+        this.weight = weight;
+        this.edges = edges;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public int[] getEdges() {
+        return edges;
+    }
+}
@@ -38,63 +38,15 @@ public class GraphUtils {
     }
 
     public ParsedGraph parseAllNodesAndEdges(String pathToNetwork, boolean penalized) {
+        return parseAllNodesAndEdges(pathToNetwork, penalized, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParsedGraph parseAllNodesAndEdges(String pathToNetwork, boolean penalized, int numberOfThreads) {
         ParsedGraph parsedGraph = new ParsedGraph();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(pathToNetwork));
             System.out.println("Parsing network from file...");
             Instant before = Instant.now();
-            String line = br.readLine();
-            boolean firstLine = true;
-            boolean weighted = false;
-            String header;
-            while (line != null) {
-                String[] lineIDs = line.split("\t");
-
-                if (lineIDs.length >= 2 & firstLine) {
-                    header = line;
-                    if (header.contains("weight")) {
-                        weighted = true;
-                    }
-                    firstLine = false;
-                } else if (lineIDs.length >= 2 & !firstLine) {
-                    String sourceNode = lineIDs[0];
-                    String targetNode = lineIDs[1];
-
-                    double weight;
-
-                    boolean selfLoop = false;
-                    if (sourceNode.equals(targetNode)) {
-                        selfLoop = true;
-                    }
-
-                    if (!selfLoop) {
-                        if (!penalized & weighted) {
-                            weight = Double.parseDouble(lineIDs[2]);
-                        } else {
-                            weight = 1.0;
-                        }
-                        ParsedEdge parsedEdge = new ParsedEdge(sourceNode, targetNode, weight);
-                        if (!parsedGraph.getNodes().contains(sourceNode)) {
-                            parsedGraph.getNodes().add(sourceNode);
-                        }
-                        if (!parsedGraph.getNodes().contains(targetNode)) {
-                            parsedGraph.getNodes().add(targetNode);
-                        }
-                        parsedGraph.getEdges().put(parsedEdge.getUniprotIDsConcat(), parsedEdge);
-
-                    }
-
-                } else {
-                    System.err.println("Wrong network file format. Please put in:\n" +
-                            "source_protein target_protein [weight]" +
-                            "<UniprotID_source> <UniprotID_target> [weight]\n" +
-                            "<UniprotID_source> <UniprotID_target> [weight]\n … ");
-                }
-
-                line = br.readLine();
-
-            }
-            br.close();
+            parsedGraph = new NetworkParser(penalized, numberOfThreads).parse(pathToNetwork);
             Instant after = Instant.now();
             Duration duration = Duration.between(before, after);
             System.out.println("Took " + duration.toMillis() + " ms!");
@@ -157,6 +109,117 @@ public class GraphUtils {
         terminalNodesString.retainAll(maxCompStr);
     }
 
+    public void inLCC(List<String> terminalNodesString, CompactGraph graph) {
+        System.out.println("Finding the largest connected component...");
+        if (graph.getLargestComponent() == null)
+            graph.setLargestComponent(findLargestComponent(graph));
+        boolean[] inLargestComponent = graph.getLargestComponent();
+        int maxcopmSize = 0;
+        for (boolean b : inLargestComponent) {
+            if (b)
+                maxcopmSize++;
+        }
+        System.out.println("The largest connected component has size " + maxcopmSize + "!");
+        terminalNodesString.removeIf(uniprotID -> graph.indexOf(uniprotID) == -1 || !inLargestComponent[graph.indexOf(uniprotID)]);
+    }
+
+    //membership of the largest connected component. The components are labeled in node order,
+    //like with the ConnectivityInspector the first largest one wins
+    public static boolean[] findLargestComponent(CompactGraph graph) {
+        int n = graph.getNodeCount();
+        int[] component = new int[n];
+        Arrays.fill(component, -1);
+        int[] queue = new int[n];
+        int maxComp = -1;
+        int maxcopmSize = 0;
+        int nrOfComps = 0;
+        for (int start = 0; start < n; start++) {
+            if (component[start] != -1)
+                continue;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            component[start] = nrOfComps;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int slot = graph.getOffset(u), end = graph.getOffset(u + 1); slot < end; slot++) {
+                    int v = graph.getNeighbour(slot);
+                    if (component[v] == -1) {
+                        component[v] = nrOfComps;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            if (tail > maxcopmSize) {
+                maxcopmSize = tail;
+                maxComp = nrOfComps;
+            }
+            nrOfComps++;
+        }
+        boolean[] inLargestComponent = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            inLargestComponent[v] = component[v] == maxComp;
+        }
+        return inLargestComponent;
+    }
+
+    //the largest connected component as a graph of its own, see CompactGraph.getLargestComponentGraph
+    public CompactGraph getLargestComponentGraph(CompactGraph graph) {
+        CompactGraph lcc = graph.getLargestComponentGraph();
+        if (lcc != graph)
+            System.out.println("Dropped " + (graph.getNodeCount() - lcc.getNodeCount()) + " nodes outside of the largest connected component!");
+        return lcc;
+    }
+
+    //For the largest connected component this is the average degree of the whole parsed network, so the hub penalty
+    //gives the same weights with and without -nlcc
+    public static double getAvDeg(CompactGraph graph) {
+        if (!Double.isNaN(graph.getParsedAverageDegree()))
+            return graph.getParsedAverageDegree();
+        double sumDeg = 0;
+        for (int v = 0; v < graph.getNodeCount(); v++) {
+            sumDeg += graph.getDegree(v);
+        }
+        return sumDeg / (double) graph.getNodeCount();
+    }
+
+    public static void setEdgeWeight(CompactGraph graph, double hubPenalty, double totalAvDeg) {
+        graph.setEdgeWeights(getHubPenaltyWeights(graph, hubPenalty, totalAvDeg));
+    }
+
+    //the edge weights setEdgeWeight would set, without changing the graph
+    public static double[] getHubPenaltyWeights(CompactGraph graph, double hubPenalty, double totalAvDeg) {
+        return getHubPenaltyWeights(getEdgeAvDeg(graph), hubPenalty, totalAvDeg);
+    }
+
+    //the average degree of the two nodes of every edge, it does not depend on the hub penalty
+    public static double[] getEdgeAvDeg(CompactGraph graph) {
+        double[] edgeAvDeg = new double[graph.getEdgeCount()];
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            edgeAvDeg[e] = ((double) (graph.getDegree(graph.getEdgeSource(e)) + graph.getDegree(graph.getEdgeTarget(e)))) / 2;
+        }
+        return edgeAvDeg;
+    }
+
+    public static double[] getHubPenaltyWeights(double[] edgeAvDeg, double hubPenalty, double totalAvDeg) {
+        double[] weights = new double[edgeAvDeg.length];
+        for (int e = 0; e < edgeAvDeg.length; e++) {
+            double w = (1 - hubPenalty) * totalAvDeg + (hubPenalty * edgeAvDeg[e]);
+            weights[e] = roundHalfUp5(w);
+        }
+        return weights;
+    }
+
+    //Same as BigDecimal.valueOf(w).setScale(5, RoundingMode.HALF_UP).doubleValue() without the allocations.
+    //Only if w * 10^5 is too close to .5 to tell the rounding direction from the double, BigDecimal decides
+    static double roundHalfUp5(double w) {
+        double scaled = Math.abs(w) * 1e5;
+        double fraction = scaled - Math.floor(scaled);
+        if (scaled >= 1e15 || Math.abs(fraction - 0.5) < 1e-6)
+            return BigDecimal.valueOf(w).setScale(5, RoundingMode.HALF_UP).doubleValue();
+        return Math.copySign(Math.floor(scaled + 0.5) / 1e5, w);
+    }
+
     public static double getAvDeg(UndirectedNetwork graph) {
         double totalAvDeg;
         double sumDeg = 0;
@@ -1,28 +1,26 @@
-import java.util.List;
-
 public class GraphWithNodes {
 
-    private UndirectedNetwork graph;
-    private List<Vertex> terminalNodes;
+    private CompactGraph graph;
+    private int[] terminalNodes;
 
-    public GraphWithNodes(UndirectedNetwork graph, List<Vertex> terminalNodes) {
+    public GraphWithNodes(CompactGraph graph, int[] terminalNodes) {
         this.graph = graph;
         this.terminalNodes = terminalNodes;
     }
 
-    public UndirectedNetwork getGraph() {
+    public CompactGraph getGraph() {
         return graph;
     }
 
-    public void setGraph(UndirectedNetwork graph) {
+    public void setGraph(CompactGraph graph) {
         this.graph = graph;
     }
 
-    public List<Vertex> getTerminalNodes() {
+    public int[] getTerminalNodes() {
         return terminalNodes;
     }
 
-    public void setTerminalNodes(List<Vertex> terminalNodes) {
+    public void setTerminalNodes(int[] terminalNodes) {
         this.terminalNodes = terminalNodes;
     }
 }
@@ -0,0 +1,150 @@
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+//Runs MuST for several hub penalties in one pass: the network is parsed once, the terminals are selected once and
+//the average degrees of the edges are computed once, every penalty only derives its own weight vector from them.
+//The penalties are computed in parallel, each one writes its own node and edge file (with _hp<penalty> added to
+//the file names, also to the file of the trees with -ot) and one summary line with the weight and size of its trees.
+public class HubPenaltySweep {
+
+    //a comma separated list (0,0.5,1) or a range start:end:step (0:1:0.1)
+    public static List<Double> parsePenalties(String value) throws ParseException {
+        List<Double> penalties = new ArrayList<>();
+        try {
+            if (value.contains(":")) {
+                String[] range = value.split(":");
+                if (range.length != 3)
+                    throw new NumberFormatException();
+                BigDecimal start = new BigDecimal(range[0].trim());
+                BigDecimal end = new BigDecimal(range[1].trim());
+                BigDecimal step = new BigDecimal(range[2].trim());
+                if (step.signum() <= 0)
+                    throw new NumberFormatException();
+                for (BigDecimal hp = start; hp.compareTo(end) <= 0; hp = hp.add(step)) {
+                    penalties.add(hp.doubleValue());
+                }
+            } else {
+                for (String hp : value.split(",")) {
+                    penalties.add(Double.parseDouble(hp.trim()));
+                }
+            }
+            for (double hp : penalties) {
+                if (hp < 0 || hp > 1)
+                    throw new NumberFormatException();
+            }
+        } catch (NumberFormatException ne) {
+            penalties.clear();
+        }
+        if (penalties.isEmpty()) {
+            System.err.println("Please specify hub penalties between 0.0 and 1.0 as list (0,0.5,1) or as range (0:1:0.1)!");
+            throw new ParseException("");
+        }
+        return penalties;
+    }
+
+    //false if a penalty failed or its results or the summary could not be written
+    public static boolean run(CompactGraph network, List<String> terminals, MuSTParameters parameters, List<Double> penalties, GraphUtils gu,
+                           String outputNodesPath, String outputEdgesPath, String outputTreesPath, String summaryPath) {
+        int[] terminalNodes = MuSTTask.getTerminalNodes(network, terminals, parameters, gu);
+        double totalAvDeg = GraphUtils.getAvDeg(network);
+        double[] edgeAvDeg = GraphUtils.getEdgeAvDeg(network);
+        System.out.println("The average degree of nodes in the graph is: " + totalAvDeg);
+
+        //the penalties that run at the same time share the cores for the iterations
+        int penaltiesAtOnce = Math.max(1, Math.min(parameters.getNumberOfCoresIterations(), penalties.size()));
+        int numberOfCoresIterations = Math.max(1, parameters.getNumberOfCoresIterations() / penaltiesAtOnce);
+        System.out.println("Computing " + penalties.size() + " hub penalties, " + penaltiesAtOnce + " at once");
+        List<Callable<MuSTResult>> tasks = new ArrayList<>();
+        for (double hp : penalties) {
+            MuSTParameters hpParameters = parameters.withHubPenalty(hp);
+            hpParameters.setNumberOfCoresIterations(numberOfCoresIterations);
+            tasks.add(() -> {
+                CompactGraph graph;
+                Metrics.Phase weightingPhase = Metrics.start("weighting");
+                try {
+                    graph = network.withEdgeWeights(GraphUtils.getHubPenaltyWeights(edgeAvDeg, hp, totalAvDeg));
+                } finally {
+                    weightingPhase.close();
+                }
+                //without its trees file the penalty is still computed
+                TreeWriter trees = null;
+                if (outputTreesPath != null) {
+                    try {
+                        trees = new TreeWriter(withSuffix(outputTreesPath, "_hp" + label(hp)));
+                    } catch (IOException ie) {
+                        System.err.println("Cannot write the trees for hub penalty " + label(hp) + ": " + ie.getMessage());
+                    }
+                }
+                try {
+                    return MuSTTask.computeParticipation(graph, terminalNodes, hpParameters, null, null, trees);
+                } finally {
+                    MuSTTask.closeTrees(trees);
+                }
+            });
+        }
+        List<Future<MuSTResult>> futures = Scheduler.submitAll(tasks, penaltiesAtOnce);
+        boolean written = true;
+
+        try (BufferedWriter summary = Files.newBufferedWriter(Paths.get(summaryPath))) {
+            summary.write("hub_penalty\tfirst_tree_weight\tfirst_tree_nodes\tfirst_tree_edges\tunique_trees\tnodes\tedges");
+            summary.newLine();
+            for (int i = 0; i < penalties.size(); i++) {
+                String label = label(penalties.get(i));
+                MuSTResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    System.err.println("The computation for hub penalty " + label + " failed: " + e.getCause());
+                    written = false;
+                    continue;
+                }
+                Metrics.Phase writePhase = Metrics.start("write");
+                try {
+                    result.write(withSuffix(outputNodesPath, "_hp" + label), withSuffix(outputEdgesPath, "_hp" + label));
+                } catch (IOException ie) {
+                    System.err.println("Wrong filepath for hub penalty " + label + ": " + ie.getMessage());
+                    written = false;
+                } finally {
+                    writePhase.close();
+                }
+                double firstTreeWeight = GraphUtils.roundHalfUp5(result.getFirstTreeWeight());
+                summary.write(label + "\t" + firstTreeWeight + "\t" + result.getFirstTreeNodes() + "\t" + result.getFirstTreeEdges() + "\t"
+                        + result.getUniqueTrees() + "\t" + result.getNrOfNodes() + "\t" + result.getNrOfEdges());
+                summary.newLine();
+                System.out.println("Hub penalty " + label + ": first tree weight " + firstTreeWeight + ", " + result.getUniqueTrees() + " unique trees");
+            }
+        } catch (IOException ie) {
+            System.err.println("Wrong filepath for the summary: " + ie.getMessage());
+            written = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            written = false;
+        } finally {
+            for (Future<MuSTResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return written;
+    }
+
+    private static String label(double hp) {
+        return BigDecimal.valueOf(hp).stripTrailingZeros().toPlainString();
+    }
+
+    //nodes.txt -> nodes_hp0.5.txt, trees.tsv.gz -> trees_hp0.5.tsv.gz
+    public static String withSuffix(String path, String suffix) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        int end = path.endsWith(".gz") ? path.length() - 3 : path.length();
+        int dot = path.lastIndexOf('.', end - 1);
+        if (dot <= slash + 1)
+            dot = end;
+        return path.substring(0, dot) + suffix + path.substring(dot);
+    }
+}
@@ -0,0 +1,104 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//Interns the UniProt IDs of a network file into int IDs 0, 1, 2, ... in order of first appearance.
+//The IDs are looked up directly on the bytes of the file, a String is only created once per distinct ID.
+public class IdDictionary {
+
+    private int[] table;
+    private int mask;
+
+    private byte[] pool = new byte[1 << 12];
+    private int poolSize;
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int[] hashes = new int[64];
+    private String[] strings = new String[64];
+    private int size;
+
+    public IdDictionary() {
+        this.table = new int[1 << 10];
+        Arrays.fill(table, -1);
+        this.mask = table.length - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getString(int id) {
+        if (strings[id] == null)
+            strings[id] = new String(pool, starts[id], lengths[id], StandardCharsets.UTF_8);
+        return strings[id];
+    }
+
+    //returns the ID of the bytes buf[from ... to-1], a new one if they were not seen before
+    public int intern(ByteBuffer buf, int from, int to) {
+        int h = hash(buf, from, to);
+        int slot = h & mask;
+        while (table[slot] != -1) {
+            int id = table[slot];
+            if (hashes[id] == h && equalBytes(id, buf, from, to))
+                return id;
+            slot = (slot + 1) & mask;
+        }
+        int id = add(buf, from, to, h);
+        table[slot] = id;
+        if (2 * size > table.length)
+            rehash();
+        return id;
+    }
+
+    private static int hash(ByteBuffer buf, int from, int to) {
+        int h = 0x811c9dc5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ buf.get(i)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean equalBytes(int id, ByteBuffer buf, int from, int to) {
+        if (lengths[id] != to - from)
+            return false;
+        int start = starts[id];
+        for (int i = from; i < to; i++) {
+            if (pool[start++] != buf.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    private int add(ByteBuffer buf, int from, int to, int h) {
+        int length = to - from;
+        if (poolSize + length > pool.length)
+            pool = Arrays.copyOf(pool, Math.max(2 * pool.length, poolSize + length));
+        for (int i = from; i < to; i++) {
+            pool[poolSize + i - from] = buf.get(i);
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+            hashes = Arrays.copyOf(hashes, 2 * size);
+            strings = Arrays.copyOf(strings, 2 * size);
+        }
+        starts[size] = poolSize;
+        lengths[size] = length;
+        hashes[size] = h;
+        poolSize += length;
+        return size++;
+    }
+
+    private void rehash() {
+        table = new int[2 * table.length];
+        Arrays.fill(table, -1);
+        mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+//Binary min heap over the node IDs 0 ... n-1 with decrease-key.
+//Equal keys are ordered by the smaller rank (the node ID if no ranks are given), so the Dijkstra settle order is deterministic.
+public class IndexedMinHeap {
+
+    private final int[] heap;
+    private final int[] position;
+    private final double[] keys;
+    private final int[] rank;
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        this(capacity, null);
+    }
+
+    public IndexedMinHeap(int capacity, int[] rank) {
+        this.rank = rank;
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int v) {
+        return position[v] >= 0;
+    }
+
+    public double getKey(int v) {
+        return keys[v];
+    }
+
+    //inserts v or lowers its key
+    public void insertOrDecrease(int v, double key) {
+        keys[v] = key;
+        if (position[v] < 0) {
+            heap[size] = v;
+            position[v] = size;
+            size++;
+        }
+        siftUp(position[v]);
+    }
+
+    public int poll() {
+        int min = heap[0];
+        size--;
+        position[min] = -1;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private boolean less(int a, int b) {
+        if (keys[a] != keys[b])
+            return keys[a] < keys[b];
+        return rank == null ? a < b : rank[a] < rank[b];
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (!less(v, p))
+                break;
+            heap[i] = p;
+            position[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && less(heap[right], c)) {
+                child = right;
+                c = heap[child];
+            }
+            if (!less(c, v))
+                break;
+            heap[i] = c;
+            position[c] = i;
+            i = child;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+}
@@ -0,0 +1,86 @@
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//The phases of Metrics as JFR events "must.Phase" with the name of the phase, so they show up in a flight recording
+//(java -XX:StartFlightRecording=filename=must.jfr ...) next to GC and allocation events.
+//jdk.jfr is not part of Java 8, which the project targets, so the event type is created with the EventFactory of
+//Java 11+ through reflection. On a JVM without it no events are emitted
+public class JfrEvents {
+
+    private static final Object factory;
+    private static final Method newEvent;
+    private static final Method begin;
+    private static final Method end;
+    private static final Method set;
+    private static final Method commit;
+
+    static {
+        Object f = null;
+        Method[] methods = new Method[5];
+        try {
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            Constructor<?> annotation = annotationElement.getConstructor(Class.class, Object.class);
+            List<Object> annotations = Arrays.asList(
+                    annotation.newInstance(annotationClass("jdk.jfr.Name"), "must.Phase"),
+                    annotation.newInstance(annotationClass("jdk.jfr.Label"), "MuST Phase"),
+                    annotation.newInstance(annotationClass("jdk.jfr.Category"), new String[]{"MuST"}));
+            List<Object> fields = Collections.singletonList(
+                    valueDescriptor.getConstructor(Class.class, String.class).newInstance(String.class, "phase"));
+            f = eventFactory.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            methods[0] = eventFactory.getMethod("newEvent");
+            methods[1] = event.getMethod("begin");
+            methods[2] = event.getMethod("end");
+            methods[3] = event.getMethod("set", int.class, Object.class);
+            methods[4] = event.getMethod("commit");
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            f = null;
+        }
+        factory = f;
+        newEvent = methods[0];
+        begin = methods[1];
+        end = methods[2];
+        set = methods[3];
+        commit = methods[4];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotationClass(String name) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name);
+    }
+
+    public static boolean isAvailable() {
+        return factory != null;
+    }
+
+    //a started event for the phase, null without JFR
+    public static Object begin(String phase) {
+        if (factory == null)
+            return null;
+        try {
+            Object event = newEvent.invoke(factory);
+            set.invoke(event, 0, phase);
+            begin.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static void commit(Object event) {
+        if (event == null)
+            return;
+        try {
+            end.invoke(event);
+            commit.invoke(event);
+        } catch (ReflectiveOperationException e) {
+            //the phase is still in the metrics
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+//Base class for the engines that only compute distances. The predecessors are chosen while a path is
+//read back, with the same rule CompactDijkstra applies implicitly: the neighbour with dist[u] + w == dist[v]
+//that is smallest by (dist[u], rank[u]). Requires positive edge weights.
+public abstract class LazyPredecessorPaths implements ShortestPathEngine {
+
+    protected final CompactGraph graph;
+    protected final double[] dist;
+
+    //only the nodes reached by the last search are reset before the next one
+    protected final int[] touched;
+    protected int nrOfTouched;
+
+    protected final boolean[] isTarget;
+    protected int source = -1;
+
+    protected LazyPredecessorPaths(CompactGraph graph) {
+        this.graph = graph;
+        this.dist = new double[graph.getNodeCount()];
+        this.touched = new int[graph.getNodeCount()];
+        this.isTarget = new boolean[graph.getNodeCount()];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+    }
+
+    protected void reset() {
+        for (int i = 0; i < nrOfTouched; i++) {
+            dist[touched[i]] = Double.POSITIVE_INFINITY;
+        }
+        nrOfTouched = 0;
+    }
+
+    //marks the targets and returns how many distinct ones there are
+    protected int markTargets(int[] targets) {
+        int remaining = 0;
+        for (int t : targets) {
+            if (!isTarget[t]) {
+                isTarget[t] = true;
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+
+    protected void unmarkTargets(int[] targets) {
+        for (int t : targets) {
+            isTarget[t] = false;
+        }
+    }
+
+    @Override
+    public double getDistance(int target) {
+        return dist[target];
+    }
+
+    @Override
+    public CompactPath getPath(int target) {
+        if (dist[target] == Double.POSITIVE_INFINITY)
+            return null;
+        int length = 0;
+        for (int v = target; v != source; v = graph.getOtherEnd(getPredecessorEdge(v), v)) {
+            length++;
+        }
+        int[] edges = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            edges[i] = getPredecessorEdge(v);
+            v = graph.getOtherEnd(edges[i], v);
+        }
+        return new CompactPath(dist[target], edges);
+    }
+
+    @Override
+    public int getPredecessorEdge(int v) {
+        int best = -1;
+        int bestNode = -1;
+        for (int slot = graph.getOffset(v), end = graph.getOffset(v + 1); slot < end; slot++) {
+            int u = graph.getNeighbour(slot);
+            if (dist[u] + graph.getSlotWeight(slot) != dist[v])
+                continue;
+            if (best == -1 || dist[u] < dist[bestNode] || (dist[u] == dist[bestNode] && graph.getRank(u) < graph.getRank(bestNode))) {
+                best = graph.getAdjacentEdge(slot);
+                bestNode = u;
+            }
+        }
+        return best;
+    }
+}
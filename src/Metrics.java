@@ -0,0 +1,190 @@
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+//Timers, counters and memory of the phases of a run (parsing, graph construction, LCC, weighting, the steps of
+//MultiSteinerTree, the iterations of -m), collected for the whole process over all threads.
+//Off by default, a phase then costs one volatile read. -metrics writes them as JSON at the end of the run,
+//-jfr emits every phase as a JFR event (see JfrEvents), -q suppresses the progress output on stdout
+public class Metrics {
+
+    private static volatile boolean enabled;
+    private static volatile boolean jfr;
+
+    //in the order the phases and counters first occur
+    private static final Map<String, PhaseStats> phases = new LinkedHashMap<>();
+    private static final Map<String, LongAdder> counters = new LinkedHashMap<>();
+
+    private static final Phase NO_PHASE = new Phase(null, null);
+
+    private static class PhaseStats {
+        long count;
+        long totalNanos;
+        long maxNanos;
+        //the heap in use at the end of the phase, the largest one over all its runs
+        long maxHeapUsed;
+    }
+
+    public static class Phase {
+        private final String name;
+        private final Object event;
+        private final long start = System.nanoTime();
+
+        private Phase(String name, Object event) {
+            this.name = name;
+            this.event = event;
+        }
+
+        public void close() {
+            if (name == null)
+                return;
+            long nanos = System.nanoTime() - start;
+            Runtime runtime = Runtime.getRuntime();
+            long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+            synchronized (phases) {
+                PhaseStats stats = phases.get(name);
+                if (stats == null) {
+                    stats = new PhaseStats();
+                    phases.put(name, stats);
+                }
+                stats.count++;
+                stats.totalNanos += nanos;
+                stats.maxNanos = Math.max(stats.maxNanos, nanos);
+                stats.maxHeapUsed = Math.max(stats.maxHeapUsed, heapUsed);
+            }
+            JfrEvents.commit(event);
+        }
+    }
+
+    public static void createOptions(Options options) {
+        options.addOption("metrics", "metrics", true, "Path to a JSON file with the time, count and heap use of every phase and the counters of the shortest path searches and trees");
+        Option.builder("metrics").numberOfArgs(1).type(String.class);
+
+        options.addOption("jfr", "jfr", false, "Emit every phase as a JFR event must.Phase (Java 11 or newer, recorded with -XX:StartFlightRecording)");
+        Option.builder("jfr").numberOfArgs(0);
+
+        options.addOption("q", "quiet", false, "No progress output on stdout, errors are still written to stderr");
+        Option.builder("q").numberOfArgs(0);
+    }
+
+    //switches the collection and the quiet mode on as given on the command line, returns the stdout of the summary
+    public static PrintStream fromCommandLine(CommandLine cl) {
+        PrintStream out = System.out;
+        if (cl.hasOption("metrics") || cl.hasOption("jfr"))
+            enabled = true;
+        if (cl.hasOption("jfr")) {
+            jfr = JfrEvents.isAvailable();
+            if (!jfr)
+                System.err.println("JFR events need Java 11 or newer, only the metrics are collected");
+        }
+        if (cl.hasOption("q"))
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+        return out;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    //times the phase until the returned phase is closed, close it in a finally block
+    public static Phase start(String name) {
+        if (!enabled)
+            return NO_PHASE;
+        return new Phase(name, jfr ? JfrEvents.begin(name) : null);
+    }
+
+    public static void count(String name, long delta) {
+        if (!enabled)
+            return;
+        LongAdder counter;
+        synchronized (counters) {
+            counter = counters.get(name);
+            if (counter == null) {
+                counter = new LongAdder();
+                counters.put(name, counter);
+            }
+        }
+        counter.add(delta);
+    }
+
+    //one search of a ShortestPathEngine (BFS and bucket queue included), with the nodes it settled and the
+    //operations on its queue
+    public static void countSearch(long settled, long queueOperations) {
+        if (!enabled)
+            return;
+        count("dijkstra_runs", 1);
+        count("settled_nodes", settled);
+        count("heap_operations", queueOperations);
+    }
+
+    //writes the metrics if -metrics was given
+    public static void write(CommandLine cl, long wallNanos) {
+        if (!cl.hasOption("metrics"))
+            return;
+        try {
+            write(cl.getOptionValue("metrics"), wallNanos);
+        } catch (IOException io) {
+            System.err.println("Cannot write the metrics: " + io.getMessage());
+        }
+    }
+
+    public static void write(String path, long wallNanos) throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(path))) {
+            writer.write("{");
+            writer.newLine();
+            writer.write("  \"wall_time_ns\": " + wallNanos + ",");
+            writer.newLine();
+            writer.write("  \"max_heap_bytes\": " + runtime.maxMemory() + ",");
+            writer.newLine();
+            writer.write("  \"phases\": {");
+            synchronized (phases) {
+                String separator = "";
+                for (Map.Entry<String, PhaseStats> phase : phases.entrySet()) {
+                    PhaseStats stats = phase.getValue();
+                    writer.write(separator);
+                    writer.newLine();
+                    writer.write("    \"" + phase.getKey() + "\": {\"count\": " + stats.count + ", \"total_ns\": " + stats.totalNanos
+                            + ", \"max_ns\": " + stats.maxNanos + ", \"max_heap_used_bytes\": " + stats.maxHeapUsed + "}");
+                    separator = ",";
+                }
+            }
+            writer.newLine();
+            writer.write("  },");
+            writer.newLine();
+            writer.write("  \"counters\": {");
+            synchronized (counters) {
+                String separator = "";
+                for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+                    writer.write(separator);
+                    writer.newLine();
+                    writer.write("    \"" + counter.getKey() + "\": " + counter.getValue().sum());
+                    separator = ",";
+                }
+            }
+            writer.newLine();
+            writer.write("  }");
+            writer.newLine();
+            writer.write("}");
+            writer.newLine();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import org.apache.commons.cli.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+//Batch mode of MuSTTask: many seed sets against one network in a single run. The network is loaded, restricted to
+//its largest connected component and weighted once. The shortest paths from the terminals of all seed sets are
+//computed once, so a terminal that is in several seed sets costs a single Dijkstra, and the seed sets are
+//computed in parallel. The manifest has one line per seed set: seed file, output file for nodes, output file for
+//edges, separated by tabs. Relative paths are relative to the manifest.
+public class MuSTBatch {
+
+    public static boolean isBatchMode(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("-b") || arg.equals("--batch"))
+                return true;
+        }
+        return false;
+    }
+
+    public static void main(String[] args) {
+        Instant before = Instant.now();
+        long start = System.nanoTime();
+        PrintStream out = System.out;
+        //the seed sets without a written result, the batch then ends with exit code 1
+        int failedJobs = 0;
+        int nrOfJobs = 0;
+
+        CommandLineParser cmp = new DefaultParser();
+        Options opts = new Options();
+        createOptions(opts);
+        try {
+            CommandLine cl = cmp.parse(opts, args);
+            out = Metrics.fromCommandLine(cl);
+            String inputNetworkFile = cl.getOptionValue("nw");
+            MuSTParameters parameters = MuSTParameters.fromCommandLine(cl);
+            List<BatchJob> jobs = readManifest(Paths.get(cl.getOptionValue("b")));
+            nrOfJobs = jobs.size();
+
+            int availableProcessors = Runtime.getRuntime().availableProcessors();
+            int numberOfCoresBatch = availableProcessors;
+            if (cl.hasOption("nbc")) {
+                try {
+                    numberOfCoresBatch = Integer.parseInt(cl.getOptionValue("nbc"));
+                    if (numberOfCoresBatch < 1)
+                        throw new NumberFormatException();
+                } catch (NumberFormatException ne) {
+                    System.err.println("Please specify a positive integer for the number of cores for the batch!");
+                    throw new ParseException("");
+                }
+            }
+            int jobsAtOnce = Math.max(1, Math.min(numberOfCoresBatch, jobs.size()));
+            //the seed sets that run at the same time share the cores for the iterations
+            if (!cl.hasOption("nci"))
+                parameters.setNumberOfCoresIterations(Math.max(1, availableProcessors / jobsAtOnce));
+
+            ShortestPathCache pathCache = ShortestPathCache.fromCommandLine(cl);
+            GraphUtils gu = new GraphUtils();
+            ResultCache resultCache = null;
+            byte[] networkDigest = null;
+            try {
+                resultCache = ResultCache.fromCommandLine(cl);
+                if (resultCache != null)
+                    networkDigest = NetworkSnapshot.digest(Paths.get(inputNetworkFile));
+            } catch (IOException io) {
+                System.err.println("Cannot use the result cache: " + io.getMessage());
+                resultCache = null;
+            }
+
+            //the seed sets that are not in the result cache
+            List<BatchJob> pending = new ArrayList<>();
+            for (BatchJob job : jobs) {
+                job.terminals = gu.parseTerminalNodes(job.seedFile);
+                if (resultCache != null) {
+                    job.cacheKey = ResultCache.key(networkDigest, job.terminals, parameters);
+                    try {
+                        if (resultCache.copyTo(job.cacheKey, job.outputNodesPath, job.outputEdgesPath)) {
+                            System.out.println("Took the result for " + job.seedFile + " from the cache!");
+                            continue;
+                        }
+                    } catch (IOException io) {
+                        System.err.println("Cannot use the result cache: " + io.getMessage());
+                    }
+                }
+                pending.add(job);
+            }
+
+            if (!pending.isEmpty()) {
+                CompactGraph network = MuSTTask.getWorkingNetwork(MuSTTask.loadNetwork(inputNetworkFile, cl.getOptionValue("snap"), parameters.isPenalized(), gu), parameters, gu);
+                CompactGraph graph = MuSTTask.getWeightedGraph(network, parameters);
+
+                Set<Integer> allTerminals = new HashSet<>();
+                for (BatchJob job : pending) {
+                    job.terminalNodes = MuSTTask.getTerminalNodes(network, job.terminals, parameters, gu);
+                    for (int t : job.terminalNodes) {
+                        allTerminals.add(t);
+                    }
+                }
+                int[] sharedTerminals = new int[allTerminals.size()];
+                int i = 0;
+                for (int t : allTerminals) {
+                    sharedTerminals[i++] = t;
+                }
+                sharedTerminals = graph.inNodeOrder(sharedTerminals);
+
+                //one Dijkstra per distinct terminal of the batch, used by every seed set that contains it
+                ShortestPathDags sharedDags = null;
+                if (parameters.getClosureMode() != ClosureMode.VORONOI && !parameters.isReduced() && ShortestPathDags.isApplicable(graph, sharedTerminals)) {
+                    Metrics.Phase shortestPathDagsPhase = Metrics.start("shortest_path_dags");
+                    try {
+                        sharedDags = new ShortestPathDags(graph, sharedTerminals, true, numberOfCoresBatch, pathCache);
+                    } finally {
+                        shortestPathDagsPhase.close();
+                    }
+                } else {
+                    System.out.println("The shortest paths are computed for every seed set on its own!");
+                }
+
+                failedJobs = runJobs(pending, graph, parameters, sharedDags, pathCache, jobsAtOnce, resultCache);
+                if (pathCache != null)
+                    System.out.println("Shortest path cache: " + pathCache.getStatistics());
+            }
+            Metrics.write(cl, System.nanoTime() - start);
+        } catch (ParseException pe) {
+            HelpFormatter hf = new HelpFormatter();
+            hf.printHelp("args", opts);
+            System.exit(1);
+        } catch (IOException io) {
+            System.err.println("Cannot read the batch manifest: " + io.getMessage());
+            System.exit(1);
+        }
+
+        Duration duration = Duration.between(before, Instant.now());
+        out.println("Everything took: " + (duration.toMillis() / 1000.0) + "sec!");
+        if (failedJobs > 0) {
+            System.err.println(failedJobs + " of " + nrOfJobs + " seed sets failed, their results were not written");
+            System.exit(1);
+        }
+    }
+
+    //the number of seed sets that failed, timed out or could not be written
+    private static int runJobs(List<BatchJob> jobs, CompactGraph graph, MuSTParameters parameters, ShortestPathDags sharedDags, ShortestPathCache pathCache, int jobsAtOnce, ResultCache resultCache) {
+        System.out.println("Computing " + jobs.size() + " seed sets, " + jobsAtOnce + " at once");
+        //with -to every seed set has its own timeout, a cancelled one is reported like a failed one
+        List<Callable<MuSTResult>> tasks = new ArrayList<>();
+        for (BatchJob job : jobs) {
+            tasks.add(() -> MuSTTask.computeParticipation(graph, job.terminalNodes, parameters, sharedDags, pathCache, null));
+        }
+        List<Future<MuSTResult>> futures = Scheduler.submitAll(tasks, jobsAtOnce);
+        int failed = 0;
+        int i = 0;
+        try {
+            for (; i < jobs.size(); i++) {
+                BatchJob job = jobs.get(i);
+                MuSTResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    System.err.println("The computation for " + job.seedFile + " failed: " + e.getCause());
+                    failed++;
+                    continue;
+                }
+                Metrics.Phase writePhase = Metrics.start("write");
+                try {
+                    result.write(job.outputNodesPath, job.outputEdgesPath);
+                    System.out.println("Wrote " + result.getUniqueTrees() + " trees for " + job.seedFile + "!");
+                } catch (IOException ie) {
+                    System.err.println("Wrong filepath for " + job.seedFile + ": " + ie.getMessage());
+                    failed++;
+                } finally {
+                    writePhase.close();
+                }
+                if (resultCache != null) {
+                    try {
+                        resultCache.put(job.cacheKey, result);
+                    } catch (IOException io) {
+                        System.err.println("Cannot write to the result cache: " + io.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            //this one and the ones after it have no result
+            failed += jobs.size() - i;
+        } finally {
+            for (Future<MuSTResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return failed;
+    }
+
+    private static List<BatchJob> readManifest(Path manifest) throws IOException, ParseException {
+        Path dir = manifest.toAbsolutePath().getParent();
+        List<BatchJob> jobs = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] columns = line.split("\t");
+                if (columns.length < 3) {
+                    System.err.println("Wrong batch manifest format in line " + lineNumber + ". Please put in:\n" +
+                            "<seed file>\t<output file for nodes>\t<output file for edges>");
+                    throw new ParseException("");
+                }
+                jobs.add(new BatchJob(dir.resolve(columns[0].trim()).toString(), dir.resolve(columns[1].trim()).toString(), dir.resolve(columns[2].trim()).toString()));
+            }
+        }
+        return jobs;
+    }
+
+    private static void createOptions(Options options) {
+        options.addRequiredOption("nw", "network", true, "Path to the Network File (String)");
+        Option.builder("nw").numberOfArgs(1).type(String.class);
+
+        options.addRequiredOption("b", "batch", true, "Path to the batch manifest: one line per seed set with seed file, output file for nodes and output file for edges, separated by tabs");
+        Option.builder("b").numberOfArgs(1).type(String.class);
+
+        options.addOption("nbc", "nrOfCoresBatch", true, "Specify the number of seed sets that are computed at the same time. If this is not specified, all available processors will be used");
+        Option.builder("nbc").numberOfArgs(1).type(Integer.class);
+
+        MuSTTask.createParameterOptions(options);
+
+        options.addOption("snap", "snapshot", true, "Path to a binary snapshot of the network");
+        Option.builder("snap").numberOfArgs(1).type(String.class);
+
+        options.addOption("rc", "resultcache", true, "Directory of the result cache");
+        Option.builder("rc").numberOfArgs(1).type(String.class);
+
+        options.addOption("rcs", "resultcachesize", true, "Maximal size of the result cache in MB (default 1024)");
+        Option.builder("rcs").numberOfArgs(1).type(Long.class);
+
+        ShortestPathCache.createOptions(options);
+        Metrics.createOptions(options);
+    }
+
+    private static class BatchJob {
+        private final String seedFile;
+        private final String outputNodesPath;
+        private final String outputEdgesPath;
+        private List<String> terminals;
+        private int[] terminalNodes;
+        private String cacheKey;
+
+        private BatchJob(String seedFile, String outputNodesPath, String outputEdgesPath) {
+            this.seedFile = seedFile;
+            this.outputNodesPath = outputNodesPath;
+            this.outputEdgesPath = outputEdgesPath;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+
+//The parameters of one MuST computation (-m, -t, -hp, -mi, -nlcc, -rs, -cm, -red, -to and the parallelization),
+//read from the command line of MuSTTask or from a job of the MuSTServer
+public class MuSTParameters {
+
+    private int nrOfTrees = 1;
+    private boolean multiple = false;
+    private boolean penalized = false;
+    private double hubPenalty = 0;
+    private int maxit = 10;
+    private long randomSeed = 42;
+    private boolean lcc = true;
+    private ClosureMode closureMode = ClosureMode.SINGLE_SOURCE;
+    private boolean reduced = false;
+    private boolean parallelDijkstra;
+    private int numberOfCoresDijkstra;
+    private int numberOfCoresIterations;
+    private long timeoutMillis = 0;
+
+    public static MuSTParameters fromCommandLine(CommandLine cl) throws ParseException {
+        MuSTParameters parameters = new MuSTParameters();
+
+        if (cl.hasOption("m")) {
+            parameters.multiple = true;
+        }
+
+        if (cl.hasOption("t")) {
+            try {
+                parameters.nrOfTrees = Integer.parseInt(cl.getOptionValue("t"));
+                if ((parameters.nrOfTrees < 1 || parameters.nrOfTrees > 50) & parameters.multiple)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify a number between 1 and 50 for your number of trees!");
+                throw new ParseException("");
+            }
+        } else if (!cl.hasOption("t") & parameters.multiple) {
+            System.err.println("If you want to have multiple results, please specify the number of trees");
+            throw new ParseException("");
+        }
+
+        if (cl.hasOption("hp")) {
+            parameters.penalized = true;
+            try {
+                parameters.hubPenalty = Double.parseDouble(cl.getOptionValue("hp"));
+                if (parameters.hubPenalty < 0 || parameters.hubPenalty > 1)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify a double between 0.0 and 1.0 for the hub penalty!");
+                throw new ParseException("");
+            }
+        }
+
+        if (cl.hasOption("mi")) {
+            try {
+                parameters.maxit = Integer.parseInt(cl.getOptionValue("mi"));
+                if (parameters.maxit < 0 || parameters.maxit > 20)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify an integer between 0 and 20 for the maximal number of iterations!");
+                throw new ParseException("");
+            }
+        } else {
+            int tmp = parameters.nrOfTrees + parameters.maxit;
+            System.out.println("You will get " + tmp + " iterations maximum per default (nrOfTrees + " + parameters.maxit + "). ");
+        }
+
+        if (cl.hasOption("rs")) {
+            try {
+                parameters.randomSeed = Long.parseLong(cl.getOptionValue("rs"));
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify an integer as random seed!");
+                throw new ParseException("");
+            }
+        }
+
+        if (cl.hasOption("nlcc")) {
+            parameters.lcc = false;
+            System.out.println("Performing the anlaysis considering everything and not only the largest connected component");
+        }
+
+        if (cl.hasOption("cm")) {
+            try {
+                parameters.closureMode = ClosureMode.valueOf(cl.getOptionValue("cm").toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException iae) {
+                System.err.println("Please specify pairwise, single-source or voronoi as closure mode!");
+                throw new ParseException("");
+            }
+        }
+
+        parameters.reduced = cl.hasOption("red");
+
+        parameters.parallelDijkstra = cl.hasOption("pd");
+
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Available processors: " + availableProcessors);
+        int numberOfCoresDijkstra;
+
+        if (cl.hasOption("ncd")) {
+            numberOfCoresDijkstra = Integer.parseInt(cl.getOptionValue("ncd"));
+            if (numberOfCoresDijkstra > availableProcessors || numberOfCoresDijkstra < 1) {
+                System.out.println("You don't have so many processors available. Will use the available processors (" + availableProcessors + ") for the Dijkstra task");
+                numberOfCoresDijkstra = -1;
+            }
+        } else {
+            if (parameters.parallelDijkstra)
+                System.out.println("Will use the available processors (" + availableProcessors + ") for the Dijkstra task");
+            numberOfCoresDijkstra = -1;
+        }
+        if (numberOfCoresDijkstra > 0) {
+            System.out.println("Using " + numberOfCoresDijkstra + " cores for the Dijkstra task!");
+        }
+        //adjust the number of cores used for Dijkstra computation
+        if (numberOfCoresDijkstra == -1 & parameters.parallelDijkstra) {
+            parameters.numberOfCoresDijkstra = availableProcessors;
+        } else if (parameters.parallelDijkstra) {
+            parameters.numberOfCoresDijkstra = numberOfCoresDijkstra;
+        } else {
+            parameters.numberOfCoresDijkstra = 1;
+        }
+
+        parameters.numberOfCoresIterations = availableProcessors;
+        if (cl.hasOption("nci")) {
+            try {
+                parameters.numberOfCoresIterations = Integer.parseInt(cl.getOptionValue("nci"));
+                if (parameters.numberOfCoresIterations < 1)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify a positive integer for the number of cores for the iterations!");
+                throw new ParseException("");
+            }
+        }
+
+        if (cl.hasOption("to")) {
+            try {
+                double seconds = Double.parseDouble(cl.getOptionValue("to"));
+                if (seconds < 0 || Double.isNaN(seconds))
+                    throw new NumberFormatException();
+                parameters.timeoutMillis = (long) Math.ceil(seconds * 1000);
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify a non-negative number of seconds for the timeout!");
+                throw new ParseException("");
+            }
+        }
+        return parameters;
+    }
+
+    //the same parameters with another hub penalty, for the hub penalty sweep
+    public MuSTParameters withHubPenalty(double hubPenalty) {
+        MuSTParameters parameters = new MuSTParameters();
+        parameters.nrOfTrees = this.nrOfTrees;
+        parameters.multiple = this.multiple;
+        parameters.penalized = true;
+        parameters.hubPenalty = hubPenalty;
+        parameters.maxit = this.maxit;
+        parameters.randomSeed = this.randomSeed;
+        parameters.lcc = this.lcc;
+        parameters.closureMode = this.closureMode;
+        parameters.reduced = this.reduced;
+        parameters.parallelDijkstra = this.parallelDijkstra;
+        parameters.numberOfCoresDijkstra = this.numberOfCoresDijkstra;
+        parameters.numberOfCoresIterations = this.numberOfCoresIterations;
+        parameters.timeoutMillis = this.timeoutMillis;
+        return parameters;
+    }
+
+    public int getNrOfTrees() {
+        return nrOfTrees;
+    }
+
+    public boolean isMultiple() {
+        return multiple;
+    }
+
+    public boolean isPenalized() {
+        return penalized;
+    }
+
+    public double getHubPenalty() {
+        return hubPenalty;
+    }
+
+    public int getMaxit() {
+        return maxit;
+    }
+
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    public boolean isLcc() {
+        return lcc;
+    }
+
+    public ClosureMode getClosureMode() {
+        return closureMode;
+    }
+
+    //true if the network is reduced for the terminals before the Steiner trees are computed, see SteinerReduction
+    public boolean isReduced() {
+        return reduced;
+    }
+
+    public boolean isParallelDijkstra() {
+        return parallelDijkstra;
+    }
+
+    //the number of cores for the Dijkstra computation, 1 without -pd
+    public int getNumberOfCoresDijkstra() {
+        return numberOfCoresDijkstra;
+    }
+
+    public int getNumberOfCoresIterations() {
+        return numberOfCoresIterations;
+    }
+
+    public void setNumberOfCoresIterations(int numberOfCoresIterations) {
+        this.numberOfCoresIterations = numberOfCoresIterations;
+    }
+
+    //the time a computation may take before it is cancelled, 0 for no timeout
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,86 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+//Participation numbers of the nodes and edges over all unique Steiner trees of one MuST computation
+public class MuSTResult {
+
+    private final ParticipationCounter participation;
+    private final int uniqueTrees;
+
+    //the first Steiner tree, the one without shuffling
+    private final double firstTreeWeight;
+    private final int firstTreeNodes;
+    private final int firstTreeEdges;
+
+    public MuSTResult(ParticipationCounter participation, int uniqueTrees, double firstTreeWeight, int firstTreeNodes, int firstTreeEdges) {
+        this.participation = participation;
+        this.uniqueTrees = uniqueTrees;
+        this.firstTreeWeight = firstTreeWeight;
+        this.firstTreeNodes = firstTreeNodes;
+        this.firstTreeEdges = firstTreeEdges;
+    }
+
+    //the number of nodes and edges in at least one of the trees
+    public int getNrOfNodes() {
+        return participation.getNrOfNodes();
+    }
+
+    public int getNrOfEdges() {
+        return participation.getNrOfEdges();
+    }
+
+    public int getUniqueTrees() {
+        return uniqueTrees;
+    }
+
+    public double getFirstTreeWeight() {
+        return firstTreeWeight;
+    }
+
+    public int getFirstTreeNodes() {
+        return firstTreeNodes;
+    }
+
+    public int getFirstTreeEdges() {
+        return firstTreeEdges;
+    }
+
+    public void write(String outputNodesPath, String outputEdgesPath) throws IOException {
+        //Write the file containing the nodes and their participation numbers
+        try (BufferedWriter bwnodes = Files.newBufferedWriter(Paths.get(outputNodesPath))) {
+            writeNodes(bwnodes);
+        }
+        //Write the file containing the edges and their participation numbers
+        try (BufferedWriter bwedges = Files.newBufferedWriter(Paths.get(outputEdgesPath))) {
+            writeEdges(bwedges);
+        }
+    }
+
+    public void writeNodes(BufferedWriter writer) throws IOException {
+        writer.write("node\tparticipation_number");
+        writer.newLine();
+        CompactGraph network = participation.getNetwork();
+        for (int v = 0; v < network.getNodeCount(); v++) {
+            int count = participation.getNodeParticipation(v);
+            if (count == 0)
+                continue;
+            writer.write(network.getUniprotID(v) + "\t" + count);
+            writer.newLine();
+        }
+    }
+
+    public void writeEdges(BufferedWriter writer) throws IOException {
+        writer.write("srcNode\ttargetNode\tparticipation_number");
+        writer.newLine();
+        CompactGraph network = participation.getNetwork();
+        for (int e = 0; e < network.getEdgeCount(); e++) {
+            int count = participation.getEdgeParticipation(e);
+            if (count == 0)
+                continue;
+            writer.write(network.getUniprotID(network.getEdgeSource(e)) + "\t" + network.getUniprotID(network.getEdgeTarget(e)) + "\t" + count);
+            writer.newLine();
+        }
+    }
+}
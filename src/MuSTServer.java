@@ -0,0 +1,343 @@
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Long-running mode of MuSTTask: the networks are loaded once and stay in memory, the jobs come in line by line
+//over stdin or a local socket. A job line holds the arguments of a single MuSTTask run without the network, e.g.
+//  -s seeds.txt -m -t 10 -hp 0.5
+//and is answered with the node and edge participation tables (or written to -on/-oe if given), followed by END.
+public class MuSTServer {
+
+    private final Map<String, CompactGraph> networks;
+    private final Map<String, byte[]> networkDigests = new HashMap<>();
+    private ResultCache resultCache;
+    private ShortestPathCache pathCache;
+    private final GraphUtils gu = new GraphUtils();
+    private final AtomicInteger jobCounter = new AtomicInteger();
+    private final Options jobOptions = new Options();
+    private volatile boolean running = true;
+    private volatile ServerSocket serverSocket;
+
+    public MuSTServer(Map<String, CompactGraph> networks) {
+        this.networks = networks;
+        createJobOptions(jobOptions);
+    }
+
+    //jobs look up and store their results in the cache, keyed by the digests of the networks
+    public void setResultCache(ResultCache resultCache) throws IOException {
+        this.resultCache = resultCache;
+        for (String networkFile : networks.keySet()) {
+            networkDigests.put(networkFile, NetworkSnapshot.digest(Paths.get(networkFile)));
+        }
+    }
+
+    //the distances from the terminals of earlier jobs are reused by later ones
+    public void setPathCache(ShortestPathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    public static boolean isServerMode(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("-srv") || arg.equals("--server"))
+                return true;
+        }
+        return false;
+    }
+
+    public static void main(String[] args) {
+        CommandLineParser cmp = new DefaultParser();
+        Options opts = new Options();
+        createOptions(opts);
+        try {
+            CommandLine cl = cmp.parse(opts, args);
+            String[] networkFiles = cl.getOptionValues("nw");
+            String[] snapshots = cl.hasOption("snap") ? cl.getOptionValues("snap") : new String[0];
+            if (snapshots.length > networkFiles.length) {
+                System.err.println("Please specify at most one snapshot per network!");
+                throw new ParseException("");
+            }
+
+            String mode = cl.getOptionValue("srv");
+            //with stdin the answers go to stdout, everything MuST prints while loading and computing goes to stderr
+            PrintStream answers = System.out;
+            if (mode.equals("stdin"))
+                System.setOut(System.err);
+
+            //the networks are loaded with their file weights, penalized jobs weight a copy
+            GraphUtils gu = new GraphUtils();
+            Map<String, CompactGraph> networks = new LinkedHashMap<>();
+            for (int i = 0; i < networkFiles.length; i++) {
+                CompactGraph graph = MuSTTask.loadNetwork(networkFiles[i], i < snapshots.length ? snapshots[i] : null, false, gu);
+                //computed up front, the jobs only read it
+                if (graph.getLargestComponent() == null)
+                    graph.setLargestComponent(GraphUtils.findLargestComponent(graph));
+                networks.put(networkFiles[i], graph);
+            }
+
+            MuSTServer server = new MuSTServer(networks);
+            server.setPathCache(ShortestPathCache.fromCommandLine(cl));
+            ResultCache resultCache = ResultCache.fromCommandLine(cl);
+            if (resultCache != null)
+                server.setResultCache(resultCache);
+            if (mode.equals("stdin")) {
+                server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new BufferedWriter(new OutputStreamWriter(answers, StandardCharsets.UTF_8)));
+            } else {
+                int port;
+                try {
+                    port = Integer.parseInt(mode);
+                } catch (NumberFormatException ne) {
+                    System.err.println("Please specify stdin or a port number for the server!");
+                    throw new ParseException("");
+                }
+                server.listen(port);
+            }
+        } catch (ParseException pe) {
+            HelpFormatter hf = new HelpFormatter();
+            hf.printHelp("args", opts);
+            System.exit(1);
+        } catch (IOException io) {
+            System.err.println("The server stopped: " + io.getMessage());
+            System.exit(1);
+        }
+    }
+
+    //accepts connections on localhost only, every connection gets its own thread and sends its jobs one after another
+    public void listen(int port) throws IOException {
+        ExecutorService connections = Executors.newCachedThreadPool();
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            this.serverSocket = serverSocket;
+            System.out.println("MuST server is listening on " + serverSocket.getLocalSocketAddress());
+            while (running) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException io) {
+                    if (running)
+                        throw io;
+                    break;
+                }
+                connections.submit(() -> {
+                    try (Socket s = socket) {
+                        serve(new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8)),
+                                new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)));
+                    } catch (IOException io) {
+                        System.err.println("Connection failed: " + io.getMessage());
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    //answers the job lines until the input ends, "stats" gives the statistics of the shortest path cache,
+    //"quit" closes the connection and "shutdown" stops the server
+    public void serve(BufferedReader in, BufferedWriter out) throws IOException {
+        String line;
+        while (running && (line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            if (line.equals("quit"))
+                break;
+            if (line.equals("stats")) {
+                out.write("STATS " + (pathCache != null ? pathCache.getStatistics() : "no shortest path cache"));
+                out.newLine();
+                out.write("END");
+                out.newLine();
+                out.flush();
+                continue;
+            }
+            if (line.equals("shutdown")) {
+                running = false;
+                //stops the accept of listen
+                if (serverSocket != null)
+                    serverSocket.close();
+                break;
+            }
+            runJob(line, out);
+            out.flush();
+        }
+        out.flush();
+    }
+
+    //the arguments of a job line, separated by whitespace. Text in double or single quotes is one argument without
+    //the quotes, so paths can contain spaces: -s "my seeds.txt". Backslashes are kept as they are (Windows paths)
+    static String[] splitArguments(String line) throws ParseException {
+        List<String> arguments = new ArrayList<>();
+        StringBuilder argument = new StringBuilder();
+        boolean inArgument = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+                else
+                    argument.append(c);
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inArgument = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    arguments.add(argument.toString());
+                    argument.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                argument.append(c);
+                inArgument = true;
+            }
+        }
+        if (quote != 0)
+            throw new ParseException("Missing closing quote " + quote + " in the job");
+        if (inArgument)
+            arguments.add(argument.toString());
+        return arguments.toArray(new String[0]);
+    }
+
+    private void runJob(String line, BufferedWriter out) throws IOException {
+        int jobId = jobCounter.incrementAndGet();
+        Instant before = Instant.now();
+        MuSTResult result;
+        String outputNodesPath;
+        String outputEdgesPath;
+        String cacheKey = null;
+        try {
+            CommandLine cl = new DefaultParser().parse(jobOptions, splitArguments(line));
+            String networkFile = cl.hasOption("nw") ? cl.getOptionValue("nw") : networks.keySet().iterator().next();
+            CompactGraph graph = networks.get(networkFile);
+            if (graph == null)
+                throw new ParseException("The network " + networkFile + " is not loaded");
+
+            List<String> terminals;
+            if (cl.hasOption("s")) {
+                terminals = gu.parseTerminalNodes(cl.getOptionValue("s"));
+            } else if (cl.hasOption("sl")) {
+                terminals = new ArrayList<>(Arrays.asList(cl.getOptionValue("sl").split(",")));
+            } else {
+                throw new ParseException("Please specify the seeds with -s or -sl");
+            }
+            outputNodesPath = cl.getOptionValue("on");
+            outputEdgesPath = cl.getOptionValue("oe");
+            if ((outputNodesPath == null) != (outputEdgesPath == null))
+                throw new ParseException("Please specify both -on and -oe or none of them");
+            MuSTParameters parameters = MuSTParameters.fromCommandLine(cl);
+
+            if (resultCache != null) {
+                cacheKey = ResultCache.key(networkDigests.get(networkFile), terminals, parameters);
+                if (answerFromCache(jobId, cacheKey, outputNodesPath, outputEdgesPath, out))
+                    return;
+            }
+            result = MuSTTask.computeParticipation(graph, terminals, parameters, gu, pathCache, null);
+        } catch (ParseException pe) {
+            writeError(jobId, pe.getMessage().isEmpty() ? "Invalid job parameters" : pe.getMessage(), out);
+            return;
+        } catch (CancellationException ce) {
+            //the job exceeded its -to timeout
+            writeError(jobId, ce.getMessage(), out);
+            return;
+        } catch (RuntimeException re) {
+            re.printStackTrace();
+            writeError(jobId, re.toString(), out);
+            return;
+        }
+
+        long millis = Duration.between(before, Instant.now()).toMillis();
+        if (outputNodesPath != null) {
+            try {
+                result.write(outputNodesPath, outputEdgesPath);
+            } catch (IOException ie) {
+                writeError(jobId, "Wrong filepath", out);
+                return;
+            }
+        }
+        if (resultCache != null) {
+            try {
+                resultCache.put(cacheKey, result);
+            } catch (IOException io) {
+                System.err.println("Cannot write to the result cache: " + io.getMessage());
+            }
+        }
+        out.write("OK " + jobId + " " + result.getUniqueTrees() + " trees in " + millis + " ms");
+        out.newLine();
+        if (outputNodesPath == null) {
+            result.writeNodes(out);
+            result.writeEdges(out);
+        }
+        out.write("END");
+        out.newLine();
+    }
+
+    //answers the job with a cached result, false if there is none
+    private boolean answerFromCache(int jobId, String cacheKey, String outputNodesPath, String outputEdgesPath, BufferedWriter out) throws IOException {
+        if (outputNodesPath != null) {
+            if (!resultCache.copyTo(cacheKey, outputNodesPath, outputEdgesPath))
+                return false;
+            out.write("OK " + jobId + " cached");
+            out.newLine();
+        } else {
+            //buffered, the OK line has to come first
+            StringWriter tables = new StringWriter();
+            BufferedWriter bw = new BufferedWriter(tables);
+            if (!resultCache.writeTo(cacheKey, bw))
+                return false;
+            bw.flush();
+            out.write("OK " + jobId + " cached");
+            out.newLine();
+            out.write(tables.toString());
+        }
+        out.write("END");
+        out.newLine();
+        return true;
+    }
+
+    private static void writeError(int jobId, String message, BufferedWriter out) throws IOException {
+        out.write("ERROR " + jobId + " " + message);
+        out.newLine();
+        out.write("END");
+        out.newLine();
+    }
+
+    private static void createOptions(Options options) {
+        options.addRequiredOption("nw", "network", true, "Path to a Network File, repeat it to keep several networks in memory");
+        Option.builder("nw").numberOfArgs(1).type(String.class);
+
+        options.addRequiredOption("srv", "server", true, "Run as server: stdin to read the jobs from stdin, or a port number to accept them on localhost");
+        Option.builder("srv").numberOfArgs(1).type(String.class);
+
+        options.addOption("snap", "snapshot", true, "Path to a binary snapshot of the network, in the order of the -nw options");
+        Option.builder("snap").numberOfArgs(1).type(String.class);
+
+        options.addOption("rc", "resultcache", true, "Directory of the result cache shared by all jobs");
+        Option.builder("rc").numberOfArgs(1).type(String.class);
+
+        options.addOption("rcs", "resultcachesize", true, "Maximal size of the result cache in MB (default 1024)");
+        Option.builder("rcs").numberOfArgs(1).type(Long.class);
+
+        ShortestPathCache.createOptions(options);
+    }
+
+    private static void createJobOptions(Options options) {
+        options.addOption("nw", "network", true, "Network of the job, one of the -nw paths of the server (default: the first one)");
+        options.addOption("s", "seed", true, "Path to the Seed File (String)");
+        options.addOption("sl", "seedlist", true, "Comma separated seeds instead of a seed file");
+        options.addOption("on", "outnodes", true, "Path to output file for nodes");
+        options.addOption("oe", "outedges", true, "Path to output file for edges");
+        MuSTTask.createParameterOptions(options);
+    }
+}
@@ -1,13 +1,12 @@
 import org.apache.commons.cli.*;
-import org.jgrapht.graph.SimpleWeightedGraph;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.PrintStream;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
 
 
 //Judith's code
@@ -16,8 +15,20 @@ import java.util.*;
 public class MuSTTask {
 
     public static void main(String[] args) {
+        if (MuSTServer.isServerMode(args)) {
+            MuSTServer.main(args);
+            return;
+        }
+        if (MuSTBatch.isBatchMode(args)) {
+            MuSTBatch.main(args);
+            return;
+        }
         //measures the time for the whole task
         Instant before = Instant.now();
+        long start = System.nanoTime();
+        PrintStream out = System.out;
+        //false if the results or the trees of -ot could not all be written, the run then ends with exit code 1
+        boolean written = true;
 
         CommandLineParser cmp = new DefaultParser();
         Options opts = new Options();
@@ -25,225 +36,356 @@ public class MuSTTask {
 
         try {
             CommandLine cl = cmp.parse(opts, args);
+            out = Metrics.fromCommandLine(cl);
 
             //Read in the paths
             String inputNetworkFile = cl.getOptionValue("nw");
             String inputSeedsFile = cl.getOptionValue("s");
             String outputNodesPath = cl.getOptionValue("on");
             String outputEdgesPath = cl.getOptionValue("oe");
+            String outputTreesPath = cl.getOptionValue("ot");
 
-            //set the defaults
-            int nrOfTrees = 1;
-            boolean multiple = false;
-            boolean penalized = false;
-            double hubPenalty = 0;
-            int maxit = 10;
-            Random rnd = new Random(42);
-            boolean lcc = true;
-
-            if (cl.hasOption("m")) {
-                multiple = true;
-            }
+            MuSTParameters parameters = MuSTParameters.fromCommandLine(cl);
 
-            if (cl.hasOption("t")) {
-                try {
-                    nrOfTrees = Integer.parseInt(cl.getOptionValue("t"));
-                    if ((nrOfTrees < 1 || nrOfTrees > 50) & multiple)
-                        throw new NumberFormatException();
-                } catch (NumberFormatException ne) {
-                    System.err.println("Please specify a number between 1 and 50 for your number of trees!");
-                    throw new ParseException("");
-                }
-            } else if (!cl.hasOption("t") & multiple) {
-                System.err.println("If you want to have multiple results, please specify the number of trees");
-                throw new ParseException("");
-            }
+            //for now it is always a PPI network
+            GraphUtils gu = new GraphUtils();
+            //parse the terminals and the whole graph from the input files specified over -s and -nw
+            List<String> terminalNodesStrings = gu.parseTerminalNodes(inputSeedsFile);
 
-            if (cl.hasOption("hp")) {
-                penalized = true;
-                try {
-                    hubPenalty = Double.parseDouble(cl.getOptionValue("hp"));
-                    if (hubPenalty < 0 || hubPenalty > 1)
-                        throw new NumberFormatException();
-                } catch (NumberFormatException ne) {
-                    System.err.println("Please specify a double between 0.0 and 1.0 for the hub penalty!");
+            if (cl.hasOption("hps")) {
+                if (cl.hasOption("hp")) {
+                    System.err.println("Please specify either a hub penalty or a hub penalty sweep!");
                     throw new ParseException("");
                 }
-            }
-
-            if (cl.hasOption("mi")) {
+                List<Double> penalties = HubPenaltySweep.parsePenalties(cl.getOptionValue("hps"));
+                //the weights of the network file are replaced by every hub penalty
+                CompactGraph graph = getWorkingNetwork(loadNetwork(inputNetworkFile, cl.getOptionValue("snap"), true, gu), parameters, gu);
+                String summaryPath = cl.hasOption("hpo") ? cl.getOptionValue("hpo") : HubPenaltySweep.withSuffix(outputNodesPath, "_hp_summary");
+                written = HubPenaltySweep.run(graph, terminalNodesStrings, parameters, penalties, gu, outputNodesPath, outputEdgesPath, outputTreesPath, summaryPath);
+            } else {
+                //a result for the same network, seeds and parameters is copied from the cache
+                ResultCache resultCache = null;
+                String cacheKey = null;
+                boolean cached = false;
                 try {
-                    maxit = Integer.parseInt(cl.getOptionValue("mi"));
-                    if (maxit < 0 || maxit > 20)
-                        throw new NumberFormatException();
-                } catch (NumberFormatException ne) {
-                    System.err.println("Please specify an integer between 0 and 20 for the maximal number of iterations!");
-                    throw new ParseException("");
+                    resultCache = ResultCache.fromCommandLine(cl);
+                    if (resultCache != null) {
+                        cacheKey = ResultCache.key(NetworkSnapshot.digest(Paths.get(inputNetworkFile)), terminalNodesStrings, parameters);
+                        //the cache holds no trees, they have to be computed again
+                        cached = outputTreesPath == null && resultCache.copyTo(cacheKey, outputNodesPath, outputEdgesPath);
+                    }
+                } catch (IOException io) {
+                    System.err.println("Cannot use the result cache: " + io.getMessage());
+                    resultCache = null;
                 }
-            } else {
-                int tmp = nrOfTrees + maxit;
-                System.out.println("You will get " + tmp + " iterations maximum per default (nrOfTrees + " + maxit + "). ");
-            }
 
-            if (cl.hasOption("nlcc")) {
-                lcc = false;
-                System.out.println("Performing the anlaysis considering everything and not only the largest connected component");
-            }
+                if (cached) {
+                    System.out.println("Took the result from the cache!");
+                } else {
+                    //opened before the computation, so a wrong path shows up at once
+                    TreeWriter trees = null;
+                    if (outputTreesPath != null) {
+                        try {
+                            trees = new TreeWriter(outputTreesPath);
+                        } catch (IOException ie) {
+                            System.err.println("Cannot write the trees: " + ie.getMessage());
+                            System.exit(1);
+                        }
+                    }
 
-            boolean parallelDijkstra = cl.hasOption("pd");
+                    //the small components are not kept beyond this point
+                    CompactGraph graph = getWorkingNetwork(loadNetwork(inputNetworkFile, cl.getOptionValue("snap"), parameters.isPenalized(), gu), parameters, gu);
 
-            int availableProcessors = Runtime.getRuntime().availableProcessors();
-            System.out.println("Available processors: " + availableProcessors);
-            int numberOfCoresDijkstra;
+                    //the participation numbers are written even if the trees could not be
+                    MuSTResult result;
+                    try {
+                        result = computeParticipation(graph, terminalNodesStrings, parameters, gu, null, trees);
+                    } finally {
+                        written = closeTrees(trees);
+                    }
 
-            if (cl.hasOption("ncd")) {
-                numberOfCoresDijkstra = Integer.parseInt(cl.getOptionValue("ncd"));
-                if (numberOfCoresDijkstra > availableProcessors || numberOfCoresDijkstra < 1) {
-                    System.out.println("You don't have so many processors available. Will make a FixedThreadPool with the available processors (" + availableProcessors + ") for the Dijkstra task");
-                    numberOfCoresDijkstra = -1;
+                    Metrics.Phase writePhase = Metrics.start("write");
+                    try {
+                        result.write(outputNodesPath, outputEdgesPath);
+                    } catch (IOException ie) {
+                        System.err.println("Wrong filepath: " + ie.getMessage());
+                        written = false;
+                    } finally {
+                        writePhase.close();
+                    }
+                    if (resultCache != null) {
+                        try {
+                            resultCache.put(cacheKey, result);
+                        } catch (IOException io) {
+                            System.err.println("Cannot write to the result cache: " + io.getMessage());
+                        }
+                    }
                 }
-            } else {
-                if (parallelDijkstra)
-                    System.out.println("Will make a FixedThreadPool with the available processors (" + availableProcessors + ") for the Dijkstra task");
-                numberOfCoresDijkstra = -1;
-            }
-            if (numberOfCoresDijkstra > 0) {
-                System.out.println("Using " + numberOfCoresDijkstra + " cores for the Dijkstra task!");
-            }
-            //adjust the number of cores used for Dijkstra computation
-            int numberOfCoresDijkstra_2;
-            if (numberOfCoresDijkstra == -1 & parallelDijkstra) {
-                numberOfCoresDijkstra_2 = availableProcessors;
-            } else if (parallelDijkstra) {
-                numberOfCoresDijkstra_2 = numberOfCoresDijkstra;
-            } else {
-                numberOfCoresDijkstra_2 = 1;
             }
+            Metrics.write(cl, System.nanoTime() - start);
 
-            List<String> terminalNodesStrings;
-            List<Vertex> terminalNodes;
-            List<String> proteins;
-            Map<String, ParsedEdge> edges;
-
-            //for now it is always a PPI network
-            GraphUtils gu = new GraphUtils();
-            //parse the terminals and the whole graph from the input files specified over -s and -nw
-            terminalNodesStrings = gu.parseTerminalNodes(inputSeedsFile);
-            ParsedGraph parsedGraph = gu.parseAllNodesAndEdges(inputNetworkFile, penalized);
-            proteins = parsedGraph.getNodes();
-            edges = parsedGraph.getEdges();
+        } catch (ParseException pe) {
+            HelpFormatter hf = new HelpFormatter();
+            hf.printHelp("args", opts);
+            System.exit(1);
+        } catch (CancellationException ce) {
+            //the trees written with -ot so far stay in their file, the participation numbers are not written
+            System.err.println(ce.getMessage() + ", no result was written");
+            System.exit(1);
+        }
 
-            //parsing the network into the UndirectedNetwork
-            UndirectedNetwork graph = new UndirectedNetwork();
-            terminalNodes = gu.parseNetwork(graph, proteins, edges, terminalNodesStrings);
+        Instant after = Instant.now();
+        Duration duration = Duration.between(before, after);
+        out.println("Everything took: " + (duration.toMillis() / 1000.0) + "sec!");
+        if (!written)
+            System.exit(1);
+    }
 
-            if (lcc) {
-                gu.inLCC(terminalNodesStrings, terminalNodes, graph);
-                System.out.println("The number of selected terminal nodes in LCC: " + terminalNodesStrings.size());
+    //parses the network file, or reuses its binary snapshot if a snapshot path is given
+    public static CompactGraph loadNetwork(String inputNetworkFile, String snapshotPath, boolean penalized, GraphUtils gu) {
+        if (snapshotPath != null) {
+            //the snapshot is (re)written if the network file changed
+            Metrics.Phase snapshotPhase = Metrics.start("snapshot");
+            try {
+                return NetworkSnapshot.loadOrCreate(inputNetworkFile, snapshotPath, penalized, gu);
+            } finally {
+                snapshotPhase.close();
             }
+        }
+        ParsedGraph parsedGraph;
+        Metrics.Phase parsePhase = Metrics.start("parse");
+        try {
+            parsedGraph = gu.parseAllNodesAndEdges(inputNetworkFile, penalized);
+        } finally {
+            parsePhase.close();
+        }
+        //parsing the network into the CompactGraph
+        Metrics.Phase graphPhase = Metrics.start("graph");
+        try {
+            return CompactGraph.fromParsedGraph(parsedGraph);
+        } finally {
+            graphPhase.close();
+        }
+    }
 
-            if (penalized) {
-                double totalAvDeg = GraphUtils.getAvDeg(graph);
-                GraphUtils.setEdgeWeight(graph, edges, hubPenalty, totalAvDeg);
-                System.out.println("The average degree of nodes in the graph is: " + totalAvDeg);
-
-            }
+    //the graph the computation works on: with -nlcc off only the largest connected component of the network
+    public static CompactGraph getWorkingNetwork(CompactGraph network, MuSTParameters parameters, GraphUtils gu) {
+        Metrics.Phase lccPhase = Metrics.start("lcc");
+        try {
+            return parameters.isLcc() ? gu.getLargestComponentGraph(network) : network;
+        } finally {
+            lccPhase.close();
+        }
+    }
 
-            //Compute the first MultiSteinerTree
-            MultiSteinerTree st = new MultiSteinerTree(graph, terminalNodes, parallelDijkstra, numberOfCoresDijkstra_2);
-            SimpleWeightedGraph<Vertex, Link> steiner = st.getSteinerTree();
-            System.out.println("The total weight of the first Steiner tree: " + st.getSteinerTreeWeight());
-            Set<Link> stEdges = steiner.edgeSet();
+    //The Steiner tree(s) for the terminals and their participation numbers. The given graph and terminal list
+    //are not changed: the hub penalty weights a copy of the graph, so one loaded network can serve many computations
+    public static MuSTResult computeParticipation(CompactGraph loadedNetwork, List<String> terminals, MuSTParameters parameters, GraphUtils gu, ShortestPathCache cache, TreeWriter trees) {
+        CompactGraph network = getWorkingNetwork(loadedNetwork, parameters, gu);
+        int[] terminalNodes = getTerminalNodes(network, terminals, parameters, gu);
+        CompactGraph graph = getWeightedGraph(network, parameters);
+        return computeParticipation(graph, terminalNodes, parameters, null, cache, trees);
+    }
 
-            //make participation number maps
-            Map<String, Integer> participationNumber = Collections.synchronizedMap(new HashMap<>());
-            Map<String, Integer> participationNumberEdges = Collections.synchronizedMap(new HashMap<>());
+    //the IDs of the terminals, with -nlcc off only the ones in the largest connected component
+    public static int[] getTerminalNodes(CompactGraph network, List<String> terminals, MuSTParameters parameters, GraphUtils gu) {
+        List<String> terminalNodesStrings = new ArrayList<>(terminals);
+        Metrics.Phase terminalsPhase = Metrics.start("terminals");
+        try {
+            if (parameters.isLcc()) {
+                gu.inLCC(terminalNodesStrings, network);
+                System.out.println("The number of selected terminal nodes in LCC: " + terminalNodesStrings.size());
+            }
+            return network.getTerminalIndices(terminalNodesStrings);
+        } finally {
+            terminalsPhase.close();
+        }
+    }
 
-            //I check whether the tree is unique by adding it to a HashSet -> if the size changes, it was a unique one
-            Set<SimpleWeightedGraph<Vertex, Link>> allUniqueTrees = Collections.synchronizedSet(new HashSet<>());
-            allUniqueTrees.add(st.getSteinerTree());
+    //the network itself, or a copy with the hub penalty weights
+    public static CompactGraph getWeightedGraph(CompactGraph network, MuSTParameters parameters) {
+        if (!parameters.isPenalized())
+            return network;
+        Metrics.Phase weightingPhase = Metrics.start("weighting");
+        try {
+            double totalAvDeg = GraphUtils.getAvDeg(network);
+            System.out.println("The average degree of nodes in the graph is: " + totalAvDeg);
+            return network.withEdgeWeights(GraphUtils.getHubPenaltyWeights(network, parameters.getHubPenalty(), totalAvDeg));
+        } finally {
+            weightingPhase.close();
+        }
+    }
 
-            for (Vertex v : steiner.vertexSet()) {
-                participationNumber.put(v.getUniprotID(), 1);
+    //Computation on the weighted graph. The shortest path DAGs can be shared between computations on the same graph
+    //if they cover all terminals; without them they are computed here for the iterations of -m, or whenever there
+    //is a cache that can hold the distances for later computations. Every unique tree is written to the tree writer
+    //as soon as it is found, if there is one
+    public static MuSTResult computeParticipation(CompactGraph graph, int[] terminalNodes, MuSTParameters parameters, ShortestPathDags sharedDags, ShortestPathCache cache, TreeWriter trees) {
+        System.out.println("Shortest paths are computed with " + ShortestPathEngine.describe(graph) + "!");
+
+        boolean multiple = parameters.isMultiple();
+        int nrOfTrees = parameters.getNrOfTrees();
+        boolean parallelDijkstra = parameters.isParallelDijkstra();
+        int numberOfCoresDijkstra = parameters.getNumberOfCoresDijkstra();
+        int numberOfCoresIterations = parameters.getNumberOfCoresIterations();
+        ClosureMode closureMode = parameters.getClosureMode();
+        //with -to the whole computation is cancelled once its timeout has passed
+        Cancellation cancellation = new Cancellation(parameters.getTimeoutMillis());
+
+        //the reduced graph belongs to these terminals only: DAGs or cached distances of the whole graph do not fit it,
+        //and its own distances are of no use to other computations
+        CompactGraph network = graph;
+        SteinerReduction reduction = null;
+        if (parameters.isReduced()) {
+            Metrics.Phase reductionPhase = Metrics.start("reduction");
+            try {
+                reduction = new SteinerReduction(graph, terminalNodes);
+            } finally {
+                reductionPhase.close();
             }
-            for (Link l : steiner.edgeSet()) {
-                participationNumberEdges.put(l.getUniprotID_Concatinated(), 1);
+            graph = reduction.getReducedGraph();
+            terminalNodes = reduction.getTerminals();
+            sharedDags = null;
+            cache = null;
+        }
+
+        //the distances do not change between the iterations of -m, compute them only once
+        ShortestPathDags dags = closureMode != ClosureMode.VORONOI ? sharedDags : null;
+        if (dags == null && (multiple || cache != null) && closureMode != ClosureMode.VORONOI && ShortestPathDags.isApplicable(graph, terminalNodes)) {
+            Metrics.Phase shortestPathDagsPhase = Metrics.start("shortest_path_dags");
+            try {
+                dags = new ShortestPathDags(graph, terminalNodes, parallelDijkstra, numberOfCoresDijkstra, cache, cancellation);
+            } finally {
+                shortestPathDagsPhase.close();
             }
+        }
 
-            //if multiple: run more Steiner tree computations
-            if (multiple) {
-                int uniqueTrees = 1;
-                int maximalInterations = nrOfTrees + maxit;
-                int iteration = 1;
+        //Compute the first MultiSteinerTree
+        MultiSteinerTree st;
+        Metrics.Phase firstTreePhase = Metrics.start("first_tree");
+        try {
+            st = new MultiSteinerTree(graph, terminalNodes, parallelDijkstra, numberOfCoresDijkstra, closureMode, dags, reduction, cancellation);
+        } finally {
+            firstTreePhase.close();
+        }
+        double firstTreeWeight = st.getSteinerTreeWeight();
+        System.out.println("The total weight of the first Steiner tree: " + firstTreeWeight);
+
+        //participation numbers over the node and edge IDs of the network
+        ParticipationCounter participation = new ParticipationCounter(network);
+
+        //I check whether the tree is unique by adding its fingerprint to a HashSet -> if the size changes, it was a unique one
+        Set<TreeFingerprint> allUniqueTrees = new HashSet<>();
+        allUniqueTrees.add(st.getFingerprint());
+
+        int[] firstTreeNodes = st.getNetworkNodes();
+        int[] firstTreeEdges = st.getNetworkEdges();
+        participation.add(firstTreeNodes, firstTreeEdges);
+        Metrics.count("unique_trees", 1);
+        trees = writeTree(trees, 0, firstTreeWeight, network, firstTreeEdges);
+
+        int uniqueTrees = 1;
+        //if multiple: run more Steiner tree computations
+        if (multiple && dags != null && dags.hasSingleTerminalGraph(terminalNodes) && st.isPathUnionAcyclic()) {
+            //no node order can lead to another tree
+            System.out.println("All shortest paths between the terminals and their MST are unique, there is only one Steiner tree! Skipping the iterations.");
+        } else if (multiple) {
+            int maximalInterations = nrOfTrees + parameters.getMaxit();
+            int iteration = 1;
+
+            //the iterations are computed ahead on the shared scheduler, but accepted strictly in order.
+            //Every iteration shuffles with its own seed, so the result does not depend on the number of threads
+            System.out.println("Computing up to " + numberOfCoresIterations + " iterations in parallel");
+            Deque<Future<MultiSteinerTree>> pending = new ArrayDeque<>();
+            int nextIteration = 1;
 
+            try {
                 while (uniqueTrees < nrOfTrees & iteration < maximalInterations) {
+                    while (nextIteration < maximalInterations && pending.size() < numberOfCoresIterations) {
+                        final long iterationSeed = getIterationSeed(parameters.getRandomSeed(), nextIteration);
+                        final CompactGraph iterationGraph = graph;
+                        final int[] iterationTerminals = terminalNodes;
+                        final ShortestPathDags iterationDags = dags;
+                        final SteinerReduction iterationReduction = reduction;
+                        pending.add(Scheduler.submit(() -> computeIteration(iterationGraph, iterationTerminals, iterationSeed, parallelDijkstra, numberOfCoresDijkstra, closureMode, iterationDags, iterationReduction, cancellation)));
+                        nextIteration++;
+                    }
+                    cancellation.check();
+                    try {
+                        st = pending.poll().get();
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof CancellationException)
+                            throw (CancellationException) e.getCause();
+                        e.printStackTrace();
+                        break;
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                        break;
+                    }
                     System.out.println("Iteration " + iteration);
-                    //shuffle the proteins and re-parse them into an Undirected Network to get new Steiner trees
-                    Collections.shuffle(proteins, rnd);
-                    GraphWithNodes graphWithNodes = getGraphWithNodes(proteins, edges, terminalNodesStrings, gu);
-                    //Compute the new Steiner tree
-                    st = computeSteinerTree(graphWithNodes, parallelDijkstra, numberOfCoresDijkstra_2);
                     //Check if this is really a new steiner tree: unique edge set?
                     boolean equal = false;
                     int size = allUniqueTrees.size();
-                    allUniqueTrees.add(st.getSteinerTree());
+                    allUniqueTrees.add(st.getFingerprint());
                     if (size == allUniqueTrees.size()) {
                         equal = true;
                         System.out.println("Already found this tree!!");
+                        Metrics.count("duplicate_trees", 1);
                     }
                     if (!equal) {
                         uniqueTrees = allUniqueTrees.size();
                         System.out.println("Number of unique trees: " + uniqueTrees);
-                        getWeightsAndParticipationNumber(st.getSteinerTree(), participationNumber, participationNumberEdges);
-
+                        double weight = st.getSteinerTreeWeight();
+                        System.out.println("Tree weight: " + weight);
+                        int[] treeEdges = st.getNetworkEdges();
+                        participation.add(st.getNetworkNodes(), treeEdges);
+                        Metrics.count("unique_trees", 1);
+                        trees = writeTree(trees, iteration, weight, network, treeEdges);
                     }
                     iteration++;
                 }
-
-                if (uniqueTrees == nrOfTrees) {
-                    System.out.println("Stopped because " + nrOfTrees + " unique trees were found!");
-                } else {
-                    System.out.println("Stopped because you've reached the maximal number of iterations!");
+            } finally {
+                //the iterations computed ahead are not needed any more
+                cancellation.cancel();
+                for (Future<MultiSteinerTree> future : pending) {
+                    future.cancel(true);
                 }
-
             }
 
-            try {
-                //Write the file containing the nodes and their participation numbers
-                BufferedWriter bwnodes = Files.newBufferedWriter(Paths.get(outputNodesPath));
-                bwnodes.write("node\tparticipation_number");
-                bwnodes.newLine();
-                for (String uniprotID : participationNumber.keySet()) {
-                    bwnodes.write(uniprotID + "\t" + participationNumber.get(uniprotID));
-                    bwnodes.newLine();
-                }
-                bwnodes.close();
-
-                //Write the file containing the edges and their participation numbers
-                BufferedWriter bwedges = Files.newBufferedWriter(Paths.get(outputEdgesPath));
-                bwedges.write("srcNode\ttargetNode\tparticipation_number");
-                bwedges.newLine();
-                for (String uniprotConcat : participationNumberEdges.keySet()) {
-                    //example: P1234 (-) Q2345
-                    String[] ids = uniprotConcat.split(" ");
-                    bwedges.write(ids[0] + "\t" + ids[2] + "\t" + participationNumberEdges.get(uniprotConcat));
-                    bwedges.newLine();
-                }
-                bwedges.close();
-
-            } catch (IOException ie) {
-                System.out.println("Wrong filepath");
+            if (uniqueTrees == nrOfTrees) {
+                System.out.println("Stopped because " + nrOfTrees + " unique trees were found!");
+            } else {
+                System.out.println("Stopped because you've reached the maximal number of iterations!");
             }
 
-        } catch (ParseException pe) {
-            HelpFormatter hf = new HelpFormatter();
-            hf.printHelp("args", opts);
-            System.exit(1);
         }
+        return new MuSTResult(participation, uniqueTrees, firstTreeWeight, firstTreeNodes.length, firstTreeEdges.length);
+    }
 
-        Instant after = Instant.now();
-        Duration duration = Duration.between(before, after);
-        System.out.println("Everything took: " + (duration.toMillis() / 1000) + "sec!");
+    //closes the tree writer, false if it failed to write a tree or to close
+    static boolean closeTrees(TreeWriter trees) {
+        if (trees == null)
+            return true;
+        try {
+            trees.close();
+            return !trees.hasFailed();
+        } catch (IOException ie) {
+            System.err.println("Cannot write the trees: " + ie.getMessage());
+            return false;
+        }
+    }
+
+    //the tree writer for the next tree, null once writing failed
+    private static TreeWriter writeTree(TreeWriter trees, int iteration, double weight, CompactGraph network, int[] treeEdges) {
+        if (trees == null)
+            return null;
+        try {
+            trees.write(iteration, weight, network, treeEdges);
+            return trees;
+        } catch (IOException ie) {
+            System.err.println("Cannot write the trees: " + ie.getMessage());
+            return null;
+        }
     }
 
     private static void createOptions(Options options) {
@@ -253,15 +395,40 @@ public class MuSTTask {
         options.addRequiredOption("s", "seed", true, "Path to the Seed File (String)");
         Option.builder("s").numberOfArgs(1).type(String.class);
 
-        options.addOption("t", "trees", true, "Number of Trees to be returned (Integer)");
-        Option.builder("t").numberOfArgs(1).type(Integer.class);
-
         options.addRequiredOption("on", "outnodes", true, "Path to output file for nodes");
         Option.builder("on").numberOfArgs(1).type(String.class);
 
         options.addRequiredOption("oe", "outedges", true, "Path to output file for edges");
         Option.builder("oe").numberOfArgs(1).type(String.class);
 
+        createParameterOptions(options);
+        Metrics.createOptions(options);
+
+        options.addOption("ot", "outtrees", true, "Path to output file for the unique trees, one line per tree with its iteration, weight and edges, written as soon as the tree is found. Gzip compressed if the path ends with .gz");
+        Option.builder("ot").numberOfArgs(1).type(String.class);
+
+        options.addOption("snap", "snapshot", true, "Path to a binary snapshot of the network. It is written on the first run and loaded instead of parsing the network file as long as the network file does not change");
+        Option.builder("snap").numberOfArgs(1).type(String.class);
+
+        options.addOption("rc", "resultcache", true, "Directory of the result cache. A result for the same network, seeds and parameters is taken from there instead of being computed again");
+        Option.builder("rc").numberOfArgs(1).type(String.class);
+
+        options.addOption("rcs", "resultcachesize", true, "Maximal size of the result cache in MB, the least recently used results are deleted first (default 1024)");
+        Option.builder("rcs").numberOfArgs(1).type(Long.class);
+
+        options.addOption("hps", "hubpenaltysweep", true, "Compute the results for several hub penalties in one run, as list (0,0.5,1) or range (0:1:0.1). Every hub penalty gets its own output files");
+        Option.builder("hps").numberOfArgs(1).type(String.class);
+
+        options.addOption("hpo", "hubpenaltysummary", true, "Path to the summary of the hub penalty sweep (default: the output file for nodes with _hp_summary)");
+        Option.builder("hpo").numberOfArgs(1).type(String.class);
+
+    }
+
+    //the parameters of the computation, also used by the jobs of the MuSTServer and MuSTBatch
+    public static void createParameterOptions(Options options) {
+        options.addOption("t", "trees", true, "Number of Trees to be returned (Integer)");
+        Option.builder("t").numberOfArgs(1).type(Integer.class);
+
         options.addOption("m", "multiple", false, "Choose this option if you want to return multiple results");
         Option.builder("m").numberOfArgs(0);
 
@@ -281,27 +448,55 @@ public class MuSTTask {
         options.addOption("pd", "parallelDijkstra", false, "Parallel Dijkstra computation");
         Option.builder("pd").numberOfArgs(0);
 
+        options.addOption("nci", "nrOfCoresIterations", true, "Specify the number of cores for computing the iterations of -m in parallel. If this is not specified, all available processors will be used");
+        Option.builder("nci").numberOfArgs(1).type(Integer.class);
+
+        options.addOption("rs", "randomseed", true, "Seed for shuffling the network in the iterations of -m (default 42)");
+        Option.builder("rs").numberOfArgs(1).type(Long.class);
+
+        options.addOption("red", "reduce", false, "Reduce the network for the seeds before the Steiner trees are computed: non-seed leaves and nodes of degree 2 " +
+                "and edges with a shorter detour are removed. Faster on large networks, ties between equally short paths can be broken differently");
+        Option.builder("red").numberOfArgs(0);
+
+        options.addOption("cm", "closure", true, "How the shortest paths between the terminals are computed: single-source (one Dijkstra per terminal, default), pairwise (one Dijkstra per pair of terminals) or voronoi (one multi-source Dijkstra, for large seed sets)");
+        Option.builder("cm").numberOfArgs(1).type(String.class);
+
+        options.addOption("to", "timeout", true, "Cancel the computation if it takes longer than this many seconds (default 0, no timeout)");
+        Option.builder("to").numberOfArgs(1).type(Double.class);
     }
 
-    private static GraphWithNodes getGraphWithNodes(List<String> proteins, Map<String, ParsedEdge> parsedEdgeMap, List<String> terminalNodesStrings, GraphUtils gu) {
-        UndirectedNetwork graph1 = new UndirectedNetwork();
-        List<Vertex> terminalNodes1 = gu.parseNetwork(graph1, proteins, parsedEdgeMap, terminalNodesStrings);
-        return new GraphWithNodes(graph1, terminalNodes1);
+    //shuffle the node order with the seed of this iteration to get new Steiner trees.
+    //The shuffled graph is only a view on the parsed one, nothing is rebuilt
+    private static MultiSteinerTree computeIteration(CompactGraph graph, int[] terminalNodes, long iterationSeed, boolean parallel, int numberOfCores, ClosureMode closureMode, ShortestPathDags dags, SteinerReduction reduction, Cancellation cancellation) {
+        cancellation.check();
+        Metrics.Phase iterationPhase = Metrics.start("iteration");
+        try {
+            GraphWithNodes graphWithNodes = getGraphWithNodes(graph, terminalNodes, new Random(iterationSeed));
+            MultiSteinerTree st = computeSteinerTree(graphWithNodes, parallel, numberOfCores, closureMode, dags, reduction, cancellation);
+            //hash the tree in the worker thread
+            st.getFingerprint();
+            return st;
+        } finally {
+            iterationPhase.close();
+        }
     }
 
-    private static MultiSteinerTree computeSteinerTree(GraphWithNodes graphWithNodes, boolean parallel, int numberOfCores) {
-        return new MultiSteinerTree(graphWithNodes.getGraph(), graphWithNodes.getTerminalNodes(), parallel, numberOfCores);
+    //SplitMix64 finalizer, spreads neighbouring iteration indices over unrelated seeds
+    private static long getIterationSeed(long randomSeed, int iteration) {
+        long z = randomSeed + iteration * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
+    private static GraphWithNodes getGraphWithNodes(CompactGraph graph, int[] terminalNodes, Random rnd) {
+        CompactGraph graph1 = graph.shuffled(rnd);
+        int[] terminalNodes1 = graph1.inNodeOrder(terminalNodes);
+        return new GraphWithNodes(graph1, terminalNodes1);
+    }
 
-    private static void getWeightsAndParticipationNumber(SimpleWeightedGraph<Vertex, Link> tree, Map<String, Integer> participationNumber, Map<String, Integer> participationNumberEdges) {
-        System.out.println("Tree weight: " + MultiSteinerTree.getSteinerTreeWeight(tree));
-        for (Vertex v : tree.vertexSet()) {
-            participationNumber.put(v.getUniprotID(), participationNumber.getOrDefault(v.getUniprotID(), 0) + 1);
-        }
-        for (Link l : tree.edgeSet()) {
-            participationNumberEdges.put(l.getUniprotID_Concatinated(), participationNumberEdges.getOrDefault(l.getUniprotID_Concatinated(), 0) + 1);
-        }
+    private static MultiSteinerTree computeSteinerTree(GraphWithNodes graphWithNodes, boolean parallel, int numberOfCores, ClosureMode closureMode, ShortestPathDags dags, SteinerReduction reduction, Cancellation cancellation) {
+        return new MultiSteinerTree(graphWithNodes.getGraph(), graphWithNodes.getTerminalNodes(), parallel, numberOfCores, closureMode, dags, reduction, cancellation);
     }
 
 }
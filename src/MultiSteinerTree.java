@@ -1,5 +1,4 @@
 import java.util.*;
-import java.util.concurrent.*;
 import org.jgrapht.GraphPath;
 import org.jgrapht.alg.interfaces.SpanningTreeAlgorithm;
 import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
@@ -14,6 +13,18 @@ public class MultiSteinerTree {
     private boolean parallel;
     private int numberOfCores;
 
+    //CompactGraph pipeline: the tree is kept as node and edge IDs and only turned into Vertex/Link objects on request
+    private CompactGraph network;
+    private int[] terminals;
+    private int[] treeNodes;
+    private int[] treeEdges;
+    private ClosureMode closureMode;
+    private ShortestPathDags dags;
+    private SteinerReduction reduction;
+    private Cancellation cancellation = Cancellation.NONE;
+    private boolean pathUnionAcyclic;
+    private TreeFingerprint fingerprint;
+
     public MultiSteinerTree(SimpleWeightedGraph<Vertex, Link> graph, List<Vertex> steinerNodes, boolean parallel, int numberOfCores) {
         this.graph = graph;
         this.steinerNodes = steinerNodes;
@@ -24,6 +35,45 @@ public class MultiSteinerTree {
 
     }
 
+    public MultiSteinerTree(CompactGraph network, int[] terminals, boolean parallel, int numberOfCores) {
+        this(network, terminals, parallel, numberOfCores, ClosureMode.SINGLE_SOURCE);
+    }
+
+    public MultiSteinerTree(CompactGraph network, int[] terminals, boolean parallel, int numberOfCores, ClosureMode closureMode) {
+        this(network, terminals, parallel, numberOfCores, closureMode, null);
+    }
+
+    // with dags, step 1 reads the paths from the precomputed shortest path DAGs instead of searching
+    public MultiSteinerTree(CompactGraph network, int[] terminals, boolean parallel, int numberOfCores, ClosureMode closureMode, ShortestPathDags dags) {
+        this(network, terminals, parallel, numberOfCores, closureMode, dags, null);
+    }
+
+    // with a reduction, the network is its reduced graph and the tree is mapped back to the edges of the whole network
+    public MultiSteinerTree(CompactGraph network, int[] terminals, boolean parallel, int numberOfCores, ClosureMode closureMode, ShortestPathDags dags, SteinerReduction reduction) {
+        this(network, terminals, parallel, numberOfCores, closureMode, dags, reduction, Cancellation.NONE);
+    }
+
+    // step 1 checks the cancellation between its terminals
+    public MultiSteinerTree(CompactGraph network, int[] terminals, boolean parallel, int numberOfCores, ClosureMode closureMode, ShortestPathDags dags, SteinerReduction reduction, Cancellation cancellation) {
+        this(network, terminals, parallel, numberOfCores, closureMode, dags, reduction, cancellation, true);
+    }
+
+    // without run the steps are not computed, the benchmarks call them one by one
+    MultiSteinerTree(CompactGraph network, int[] terminals, boolean parallel, int numberOfCores, ClosureMode closureMode, ShortestPathDags dags, SteinerReduction reduction, Cancellation cancellation, boolean run) {
+        this.reduction = reduction;
+        this.cancellation = cancellation;
+        this.network = network;
+        this.terminals = terminals;
+        this.parallel = parallel;
+        this.numberOfCores = numberOfCores;
+        this.closureMode = closureMode;
+        this.dags = closureMode == ClosureMode.VORONOI ? null : dags;
+
+        if (run)
+            runCompactAlgorithm();
+
+    }
+
     // Using SimpleWeightedGraph instead of WeightedPseudograph, it's better since it doesn't have selfloop and multiple edges
     private SimpleWeightedGraph<Vertex, Link> step1(Map<Link, List<Link>> spMap, boolean parallel, int numberOfCores) {
 
@@ -34,57 +84,31 @@ public class MultiSteinerTree {
         }
 
         if (parallel) {
-            //Dijkstra computation: make a FixedThreadPool with the specified number of cores
-            ExecutorService threadPoolDijkstra = Executors.newFixedThreadPool(numberOfCores);
-            System.out.println("Made a special FixedThreadPool for the Dijkstra task with " + numberOfCores + " places for threads. ");
-
-            //CountDownLatch to guarantee that the algorithm waits for the termination of the Dijkstra computation
-            CountDownLatch countDownLatch = new CountDownLatch(this.steinerNodes.size() * this.steinerNodes.size());
-
-            Set<String> linkSet = Collections.synchronizedSet(new HashSet<>());
-            Map<String, Link> linkMap = Collections.synchronizedMap(new HashMap<>());
-
-            for(Vertex n1: this.steinerNodes){
-                for(Vertex n2: this.steinerNodes){
-                    String link = n1.getUniprotID() + "(-)" + n2.getUniprotID();
-                    String linkReverse = n2.getUniprotID() + "(-)" + n2.getUniprotID();
-
-                    if(!n1.equals(n2) && !linkSet.contains(link) && !linkSet.contains(linkReverse)){
-                        CompletableFuture
-                                .supplyAsync(() -> DijkstraShortestPath.findPathBetween(this.graph, n1, n2), threadPoolDijkstra)
-                                .thenAccept(vertexLinkGraphPath -> memorizeWeights(n1, n2, vertexLinkGraphPath, spMap, linkMap, countDownLatch));
-                    }else{
-                        countDownLatch.countDown();
-                    }
-
-                    linkSet.add(n1.getUniprotID() + "(-)" + n2.getUniprotID());
+            //Dijkstra computation on the shared scheduler: one task per terminal computes the paths to the terminals after it
+            List<Vertex> nodes = this.steinerNodes;
+            int k = nodes.size();
+            Link[][] links = new Link[k][k];
+            Scheduler.forEach(k, numberOfCores, Cancellation.NONE, i -> {
+                for (int j = i + 1; j < k; j++) {
+                    Vertex n1 = nodes.get(i);
+                    Vertex n2 = nodes.get(j);
+                    GraphPath<Vertex, Link> gpath = n1.equals(n2) ? null : DijkstraShortestPath.findPathBetween(this.graph, n1, n2);
+                    if (gpath == null)
+                        continue;
+                    Link e = new Link(n1, n2, gpath.getWeight());
+                    // Keep the shortest path between steiner nodes to avoid computing them again at step 3, Attention: not all of these shortest paths will be used
+                    spMap.put(e, gpath.getEdgeList());
+                    links[i][j] = e;
                 }
-            }
-            //Wait for the countDownLatches
-            try {
-                System.out.println("Awaiting termination for Dijkstra in Thread " + Thread.currentThread().getName() + "...");
-                countDownLatch.await();
-                System.out.println("Done with Dijkstra parallel computation in Thread " + Thread.currentThread().getName() + "!");
-                threadPoolDijkstra.shutdownNow();
-            }catch (InterruptedException ie){
-                ie.printStackTrace();
-            }
+            });
             //add the edges to the graph with their dijkstra weights
-            for(Vertex n1: this.steinerNodes){
-                for(Vertex n2: this.steinerNodes){
-                    String uniProtConcat = n1.getUniprotID()+ " (-) " + n2.getUniprotID();
-                    String uniProtConcatReverse = n2.getUniprotID()+ " (-) " + n1.getUniprotID();
-                    Link l;
-                    if(linkMap.containsKey(uniProtConcat)){
-                        l = linkMap.get(uniProtConcat);
-                    }else
-                        l = linkMap.getOrDefault(uniProtConcatReverse, null);
-
-                    if(l != null){
-                        g.addEdge(n1, n2, l);
+            for (int i = 0; i < k; i++) {
+                for (int j = i + 1; j < k; j++) {
+                    Link l = links[i][j];
+                    if (l != null) {
+                        g.addEdge(nodes.get(i), nodes.get(j), l);
                         g.setEdgeWeight(l, l.getWeight());
                     }
-
                 }
             }
         //now: not parallel computation
@@ -110,18 +134,6 @@ public class MultiSteinerTree {
 
     }
 
-    private void memorizeWeights(Vertex n1, Vertex n2, GraphPath<Vertex, Link> gpath, Map<Link, List<Link>> spMap, Map<String, Link> linkMap, CountDownLatch countDownLatch){
-        try {
-            Link e = new Link(n1, n2, gpath.getWeight());
-            // Keep the shortest path between steiner nodes to avoid computing them again at step 3, Attention: not all of these shortest paths will be used
-            spMap.put(e, gpath.getEdgeList());
-            linkMap.put(e.getUniprotID_Concatinated(), e);
-        }finally {
-            countDownLatch.countDown();
-        }
-    }
-
-
     private SimpleWeightedGraph<Vertex, Link> step2(SimpleWeightedGraph<Vertex, Link> g1) {
 
         KruskalMinimumSpanningTree<Vertex, Link> mst = new KruskalMinimumSpanningTree<>(g1);
@@ -239,11 +251,339 @@ public class MultiSteinerTree {
 
     }
 
+    // CompactGraph version of step 1, reverse pairs are skipped.
+    // In SINGLE_SOURCE mode every terminal gets one Dijkstra that stops when all later terminals are settled,
+    // the paths are read from its predecessor tree. PAIRWISE runs one search per pair and gives the same paths.
+    // The engine is a BFS or a bucket queue instead of Dijkstra if the weights allow it, the paths stay the same.
+    // The complete terminal graph is kept as a dense distance matrix, see TerminalClosure.
+    TerminalClosure compactStep1(boolean parallel, int numberOfCores) {
+
+        if (this.dags != null)
+            return this.dags.getTerminalClosure(this.network, this.terminals);
+
+        TerminalClosure closure = new TerminalClosure(this.terminals);
+
+        if (parallel) {
+            //one task per terminal computes the paths to all terminals after it, every task fills its own pairs.
+            //The tasks run on the shared scheduler, every worker with its own engine
+            Scheduler.forEach(this.terminals.length - 1, numberOfCores, this.cancellation,
+                    () -> ShortestPathEngine.forGraph(this.network), (engine, i) -> shortestPathsFrom(engine, i, closure));
+        } else {
+            ShortestPathEngine engine = ShortestPathEngine.forGraph(this.network);
+            for (int i = 0; i < this.terminals.length - 1; i++) {
+                this.cancellation.check();
+                shortestPathsFrom(engine, i, closure);
+            }
+        }
+
+        return closure;
+    }
+
+    private void shortestPathsFrom(ShortestPathEngine engine, int first, TerminalClosure closure) {
+        int n1 = this.terminals[first];
+        if (this.closureMode == ClosureMode.SINGLE_SOURCE)
+            engine.run(n1, Arrays.copyOfRange(this.terminals, first + 1, this.terminals.length));
+        // only the predecessors on the paths are kept, the paths of the MST links are read back in step 2
+        PredecessorTree tree = new PredecessorTree(this.network, n1);
+        for (int j = first + 1; j < this.terminals.length; j++) {
+            int n2 = this.terminals[j];
+            if (this.closureMode == ClosureMode.PAIRWISE)
+                engine.run(n1, new int[]{n2});
+            // terminals in different components are not connected in the terminal graph
+            closure.setDistance(first, j, engine.getDistance(n2));
+            tree.addPathTo(engine, n2);
+        }
+        tree.finish();
+        closure.setPredecessorTree(first, tree);
+    }
+
+    // Kruskal on the sparse terminal graph of VORONOI, the stable sort keeps ties in insertion order like KruskalMinimumSpanningTree
+    List<TerminalLink> compactStep2(List<TerminalLink> terminalLinks) {
+
+        int[] terminalPosition = new int[this.network.getNodeCount()];
+        Arrays.fill(terminalPosition, -1);
+        for (int i = 0; i < this.terminals.length; i++) {
+            terminalPosition[this.terminals[i]] = i;
+        }
+
+        List<TerminalLink> sorted = new ArrayList<>(terminalLinks);
+        sorted.sort(Comparator.comparingDouble(TerminalLink::getWeight));
+
+        UnionFind uf = new UnionFind(this.terminals.length);
+        List<TerminalLink> mst = new ArrayList<>();
+        for (TerminalLink tl : sorted) {
+            if (uf.union(terminalPosition[tl.getSource()], terminalPosition[tl.getTarget()]))
+                mst.add(tl);
+        }
+        return mst;
+    }
+
+    // replace the terminal links by the edges of their shortest paths, every edge once in the order it first appears.
+    // Positions and edges are sorted as primitives, nothing of the size of the network is allocated
+    int[] compactStep3(List<TerminalLink> mst) {
+
+        int size = 0;
+        for (TerminalLink tl : mst) {
+            size += tl.getPath().getEdges().length;
+        }
+        int[] pathEdges = new int[size];
+        long[] byEdge = new long[size];
+        int p = 0;
+        for (TerminalLink tl : mst) {
+            for (int e : tl.getPath().getEdges()) {
+                pathEdges[p] = e;
+                byEdge[p] = ((long) e << 32) | p;
+                p++;
+            }
+        }
+        Arrays.sort(byEdge);
+        int[] firstPositions = new int[size];
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || (byEdge[i] >>> 32) != (byEdge[i - 1] >>> 32))
+                firstPositions[unique++] = (int) byEdge[i];
+        }
+        Arrays.sort(firstPositions, 0, unique);
+        int[] edges = new int[unique];
+        for (int i = 0; i < unique; i++) {
+            edges[i] = pathEdges[firstPositions[i]];
+        }
+        return edges;
+    }
+
+    // Kruskal on the subgraph spanned by the path edges, the stable sort keeps ties in the order of step 3
+    int[] compactStep4(int[] edges) {
+
+        int[] nodes = endpoints(edges);
+        int[] sorted = sortByWeight(edges);
+
+        UnionFind uf = new UnionFind(nodes.length);
+        int[] mst = new int[Math.max(0, nodes.length - 1)];
+        int size = 0;
+        for (int e : sorted) {
+            if (uf.union(Arrays.binarySearch(nodes, this.network.getEdgeSource(e)), Arrays.binarySearch(nodes, this.network.getEdgeTarget(e))))
+                mst[size++] = e;
+        }
+        return Arrays.copyOf(mst, size);
+    }
+
+    // prune the non-terminal leaves until every leaf is a terminal, with a queue of leaves over the local node indices
+    void compactStep5(int[] edges) {
+
+        int[] nodes = endpoints(edges);
+        int[] sortedTerminals = this.terminals.clone();
+        Arrays.sort(sortedTerminals);
+        boolean[] isTerminal = new boolean[nodes.length];
+        for (int l = 0; l < nodes.length; l++) {
+            isTerminal[l] = Arrays.binarySearch(sortedTerminals, nodes[l]) >= 0;
+        }
+
+        //local ends of the edges and the incident edges of every local node
+        int[] source = new int[edges.length];
+        int[] target = new int[edges.length];
+        int[] degree = new int[nodes.length];
+        for (int i = 0; i < edges.length; i++) {
+            source[i] = Arrays.binarySearch(nodes, this.network.getEdgeSource(edges[i]));
+            target[i] = Arrays.binarySearch(nodes, this.network.getEdgeTarget(edges[i]));
+            degree[source[i]]++;
+            degree[target[i]]++;
+        }
+        int[] offsets = new int[nodes.length + 1];
+        for (int l = 0; l < nodes.length; l++) {
+            offsets[l + 1] = offsets[l] + degree[l];
+        }
+        int[] incident = new int[2 * edges.length];
+        int[] next = Arrays.copyOf(offsets, nodes.length);
+        for (int i = 0; i < edges.length; i++) {
+            incident[next[source[i]]++] = i;
+            incident[next[target[i]]++] = i;
+        }
+
+        boolean[] edgeRemoved = new boolean[edges.length];
+        boolean[] nodeRemoved = new boolean[nodes.length];
+        int[] leaves = new int[nodes.length];
+        int nrOfLeaves = 0;
+        for (int l = 0; l < nodes.length; l++) {
+            if (degree[l] == 1 && !isTerminal[l])
+                leaves[nrOfLeaves++] = l;
+        }
+        while (nrOfLeaves > 0) {
+            int l = leaves[--nrOfLeaves];
+            int i = offsets[l];
+            while (edgeRemoved[incident[i]]) {
+                i++;
+            }
+            int e = incident[i];
+            int other = source[e] == l ? target[e] : source[e];
+            edgeRemoved[e] = true;
+            nodeRemoved[l] = true;
+            degree[l]--;
+            degree[other]--;
+            if (degree[other] == 1 && !isTerminal[other])
+                leaves[nrOfLeaves++] = other;
+        }
+
+        //the remaining nodes in the order they first appear in the edges, the remaining edges in their order
+        boolean[] emitted = new boolean[nodes.length];
+        int[] treeNodes = new int[nodes.length];
+        int[] treeEdges = new int[edges.length];
+        int nrOfNodes = 0;
+        int nrOfEdges = 0;
+        for (int i = 0; i < edges.length; i++) {
+            for (int end = 0; end < 2; end++) {
+                int l = end == 0 ? source[i] : target[i];
+                if (!nodeRemoved[l] && !emitted[l]) {
+                    emitted[l] = true;
+                    treeNodes[nrOfNodes++] = nodes[l];
+                }
+            }
+            if (!edgeRemoved[i])
+                treeEdges[nrOfEdges++] = edges[i];
+        }
+        this.treeNodes = Arrays.copyOf(treeNodes, nrOfNodes);
+        this.treeEdges = Arrays.copyOf(treeEdges, nrOfEdges);
+    }
+
+    // the nodes of the edges, sorted, so a node's local index is found by binary search
+    private int[] endpoints(int[] edges) {
+        int[] nodes = new int[2 * edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            nodes[2 * i] = this.network.getEdgeSource(edges[i]);
+            nodes[2 * i + 1] = this.network.getEdgeTarget(edges[i]);
+        }
+        Arrays.sort(nodes);
+        int size = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (size == 0 || nodes[i] != nodes[size - 1])
+                nodes[size++] = nodes[i];
+        }
+        return Arrays.copyOf(nodes, size);
+    }
+
+    // stable merge sort of the edges by their weight
+    private int[] sortByWeight(int[] edges) {
+        int[] sorted = edges.clone();
+        int[] buffer = new int[edges.length];
+        for (int width = 1; width < sorted.length; width *= 2) {
+            for (int lo = 0; lo < sorted.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, sorted.length);
+                int hi = Math.min(lo + 2 * width, sorted.length);
+                int a = lo;
+                int b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (a < mid && (b >= hi || this.network.getEdgeWeight(sorted[a]) <= this.network.getEdgeWeight(sorted[b])))
+                        buffer[k] = sorted[a++];
+                    else
+                        buffer[k] = sorted[b++];
+                }
+            }
+            int[] tmp = sorted;
+            sorted = buffer;
+            buffer = tmp;
+        }
+        return sorted;
+    }
+
+    private void runCompactAlgorithm() {
+
+        System.out.println("Computing the MultiSteinerTree ...");
+        this.cancellation.check();
+
+        if (this.terminals.length < 2) {
+            this.treeNodes = this.terminals.clone();
+            this.treeEdges = new int[0];
+            this.pathUnionAcyclic = true;
+            return;
+        }
+
+        // VORONOI builds the sparse bridge graph of Mehlhorn's algorithm with a single multi-source Dijkstra,
+        // the complete terminal graph goes through Prim on its distance matrix
+        List<TerminalLink> g1;
+        TerminalClosure closure = null;
+        Metrics.Phase step1Phase = Metrics.start("step1");
+        try {
+            if (this.closureMode == ClosureMode.VORONOI)
+                g1 = new VoronoiClosure(this.network, this.terminals).getTerminalLinks();
+            else {
+                g1 = null;
+                closure = compactStep1(this.parallel, this.numberOfCores);
+            }
+        } finally {
+            step1Phase.close();
+        }
+        List<TerminalLink> g2;
+        Metrics.Phase step2Phase = Metrics.start("step2");
+        try {
+            g2 = closure == null ? compactStep2(g1) : closure.minimumSpanningTree();
+        } finally {
+            step2Phase.close();
+        }
+
+        int[] g3;
+        Metrics.Phase step3Phase = Metrics.start("step3");
+        try {
+            g3 = compactStep3(g2);
+        } finally {
+            step3Phase.close();
+        }
+
+        int[] g4;
+        Metrics.Phase step4Phase = Metrics.start("step4");
+        try {
+            g4 = compactStep4(g3);
+        } finally {
+            step4Phase.close();
+        }
+        this.pathUnionAcyclic = g4.length == g3.length;
+
+        Metrics.Phase step5Phase = Metrics.start("step5");
+        try {
+            compactStep5(g4);
+        } finally {
+            step5Phase.close();
+        }
+        System.out.println("Done with the MultiSteinerTree!");
+    }
+
+    // true if the shortest paths of step 3 already formed a tree, so step 4 could not choose between edges
+    public boolean isPathUnionAcyclic() {
+        return this.pathUnionAcyclic;
+    }
+
     public SimpleWeightedGraph<Vertex, Link> getSteinerTree() {
+        if (this.tree == null && this.reduction != null)
+            this.tree = this.reduction.toNetworkTree(this.treeNodes, this.treeEdges);
+        if (this.tree == null)
+            this.tree = this.network.toSimpleWeightedGraph(this.treeNodes, this.treeEdges);
         return this.tree;
     }
 
+    //identifies the tree among the trees of the other iterations without building its graph
+    public TreeFingerprint getFingerprint() {
+        if (this.fingerprint == null)
+            this.fingerprint = new TreeFingerprint(this.treeNodes, this.treeEdges);
+        return this.fingerprint;
+    }
+
+    //the IDs of the nodes and edges of the tree in the network, also if it was computed on the reduced graph
+    public int[] getNetworkNodes() {
+        return this.reduction != null ? this.reduction.toNetworkNodes(this.treeNodes, this.treeEdges) : this.treeNodes;
+    }
+
+    public int[] getNetworkEdges() {
+        return this.reduction != null ? this.reduction.toNetworkEdges(this.treeEdges) : this.treeEdges;
+    }
+
     public double getSteinerTreeWeight() {
+        if (this.reduction != null)
+            return this.reduction.getNetworkWeight(this.treeEdges);
+        if (this.network != null) {
+            double weight = 0D;
+            for (int e : this.treeEdges) {
+                weight += this.network.getEdgeWeight(e);
+            }
+            return weight;
+        }
         double weight = 0D;
         for (Link l : this.tree.edgeSet()) {
             weight += l.getWeight();
@@ -264,11 +604,11 @@ public class MultiSteinerTree {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MultiSteinerTree that = (MultiSteinerTree) o;
-        return tree.edgeSet().equals(that.getSteinerTree().edgeSet());
+        return getSteinerTree().edgeSet().equals(that.getSteinerTree().edgeSet());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(tree.edgeSet());
+        return Objects.hash(getSteinerTree().edgeSet());
     }
 }
\ No newline at end of file
@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+//Parser for tab separated network files that gives the same ParsedGraph as the line-by-line parsing did:
+//the first line with two columns is the header, self loops are skipped, nodes are listed in order of first appearance.
+//The file is memory mapped and split into chunks at line ends, the chunks are tokenized in parallel without regex
+//and merged in file order, so the result does not depend on the number of threads.
+//The connected components are tracked with a union-find while the edges are merged, so the largest connected
+//component is known without another pass over the graph.
+public class NetworkParser {
+
+    private static final long CHUNK_SIZE = 32L << 20;
+
+    private final boolean penalized;
+    private final int numberOfThreads;
+
+    public NetworkParser(boolean penalized, int numberOfThreads) {
+        this.penalized = penalized;
+        this.numberOfThreads = Math.max(1, numberOfThreads);
+    }
+
+    public ParsedGraph parse(String pathToNetwork) throws IOException {
+        ParsedGraph parsedGraph = new ParsedGraph();
+        try (FileChannel channel = FileChannel.open(Paths.get(pathToNetwork), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            //the header decides whether there are weights, so it is read before the chunks are split up
+            long bodyStart = 0;
+            boolean weighted = false;
+            boolean headerFound = false;
+            int wrongLines = 0;
+            while (bodyStart < size && !headerFound) {
+                long lineEnd = findLineEnd(channel, bodyStart, size);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, bodyStart, lineEnd - bodyStart);
+                int end = trimLine(buf, 0, buf.limit());
+                if (hasTwoColumns(buf, 0, end)) {
+                    headerFound = true;
+                    weighted = new String(toBytes(buf, 0, end), StandardCharsets.UTF_8).contains("weight");
+                } else {
+                    wrongLines++;
+                }
+                bodyStart = Math.min(size, lineEnd + 1);
+            }
+            printWrongFormat(wrongLines);
+
+            List<Long> boundaries = new ArrayList<>();
+            boundaries.add(bodyStart);
+            long nrOfChunks = Math.max(numberOfThreads, (size - bodyStart) / CHUNK_SIZE + 1);
+            long step = Math.max(1, (size - bodyStart) / nrOfChunks);
+            for (long b = bodyStart + step; b < size; b += step) {
+                long lineStart = Math.min(size, findLineEnd(channel, b - 1, size) + 1);
+                if (lineStart > boundaries.get(boundaries.size() - 1))
+                    boundaries.add(lineStart);
+            }
+            if (boundaries.get(boundaries.size() - 1) < size)
+                boundaries.add(size);
+
+            final boolean parseWeights = weighted & !penalized;
+            List<Chunk> chunks = new ArrayList<>();
+            if (numberOfThreads > 1 && boundaries.size() > 2) {
+                //every chunk on the shared scheduler, the chunks stay in file order
+                Chunk[] parsed = new Chunk[boundaries.size() - 1];
+                try {
+                    Scheduler.forEach(parsed.length, numberOfThreads, Cancellation.NONE, i -> {
+                        try {
+                            parsed[i] = parseChunk(channel, boundaries.get(i), boundaries.get(i + 1), parseWeights);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                chunks.addAll(Arrays.asList(parsed));
+            } else {
+                for (int i = 0; i + 1 < boundaries.size(); i++) {
+                    chunks.add(parseChunk(channel, boundaries.get(i), boundaries.get(i + 1), parseWeights));
+                }
+            }
+
+            Map<String, Integer> nodeIndex = new HashMap<>();
+            int maxNodes = 0;
+            for (Chunk chunk : chunks) {
+                maxNodes += chunk.dictionary.size();
+            }
+            UnionFind components = new UnionFind(maxNodes);
+            for (Chunk chunk : chunks) {
+                merge(chunk, parsedGraph, nodeIndex, components);
+            }
+            parsedGraph.setLargestComponent(largestComponent(components, parsedGraph.getNodes().size()));
+        }
+        return parsedGraph;
+    }
+
+    //like GraphUtils.findLargestComponent the first largest component in node order wins
+    private static boolean[] largestComponent(UnionFind components, int n) {
+        int maxRoot = -1;
+        int maxcopmSize = 0;
+        for (int v = 0; v < n; v++) {
+            if (components.size(v) > maxcopmSize) {
+                maxcopmSize = components.size(v);
+                maxRoot = components.find(v);
+            }
+        }
+        boolean[] inLargestComponent = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            inLargestComponent[v] = components.find(v) == maxRoot;
+        }
+        return inLargestComponent;
+    }
+
+    //merges in file order: the node order and the edge map are the same as with sequential parsing
+    private void merge(Chunk chunk, ParsedGraph parsedGraph, Map<String, Integer> nodeIndex, UnionFind components) {
+        printWrongFormat(chunk.wrongLines);
+        List<String> nodes = parsedGraph.getNodes();
+        Map<String, ParsedEdge> edges = parsedGraph.getEdges();
+        //index in the node list of every node of the chunk's dictionary, -1 until it is seen
+        int[] global = new int[chunk.dictionary.size()];
+        Arrays.fill(global, -1);
+        for (int i = 0; i < chunk.nrOfEdges; i++) {
+            int s = chunk.sources[i];
+            int t = chunk.targets[i];
+            String sourceNode = chunk.dictionary.getString(s);
+            String targetNode = chunk.dictionary.getString(t);
+            if (global[s] == -1)
+                global[s] = addNode(sourceNode, nodes, nodeIndex);
+            if (global[t] == -1)
+                global[t] = addNode(targetNode, nodes, nodeIndex);
+            components.union(global[s], global[t]);
+            ParsedEdge parsedEdge = new ParsedEdge(sourceNode, targetNode, chunk.weights[i]);
+            edges.put(parsedEdge.getUniprotIDsConcat(), parsedEdge);
+        }
+    }
+
+    private static int addNode(String node, List<String> nodes, Map<String, Integer> nodeIndex) {
+        Integer index = nodeIndex.putIfAbsent(node, nodes.size());
+        if (index != null)
+            return index;
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+
+    private static Chunk parseChunk(FileChannel channel, long from, long to, boolean parseWeights) throws IOException {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        Chunk chunk = new Chunk();
+        int limit = buf.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            parseLine(buf, lineStart, trimLine(buf, lineStart, lineEnd), parseWeights, chunk);
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static void parseLine(ByteBuffer buf, int start, int end, boolean parseWeights, Chunk chunk) {
+        if (!hasTwoColumns(buf, start, end)) {
+            chunk.wrongLines++;
+            return;
+        }
+        int firstTab = indexOfTab(buf, start, end);
+        int secondTab = indexOfTab(buf, firstTab + 1, end);
+        int s = chunk.dictionary.intern(buf, start, firstTab);
+        int t = chunk.dictionary.intern(buf, firstTab + 1, secondTab);
+        //self loops are dropped before their nodes are added
+        if (s == t)
+            return;
+
+        double weight;
+        if (parseWeights) {
+            if (secondTab == end) {
+                chunk.wrongLines++;
+                return;
+            }
+            int thirdTab = indexOfTab(buf, secondTab + 1, end);
+            weight = Double.parseDouble(new String(toBytes(buf, secondTab + 1, thirdTab), StandardCharsets.UTF_8));
+        } else {
+            weight = 1.0;
+        }
+        chunk.add(s, t, weight);
+    }
+
+    //same as line.split("\t").length >= 2: some column after the first one is not empty
+    private static boolean hasTwoColumns(ByteBuffer buf, int start, int end) {
+        int firstTab = indexOfTab(buf, start, end);
+        for (int i = firstTab + 1; i < end; i++) {
+            if (buf.get(i) != '\t')
+                return true;
+        }
+        return false;
+    }
+
+    private static int indexOfTab(ByteBuffer buf, int from, int end) {
+        int i = from;
+        while (i < end && buf.get(i) != '\t') {
+            i++;
+        }
+        return i;
+    }
+
+    //drops the \r of Windows line endings
+    private static int trimLine(ByteBuffer buf, int start, int end) {
+        return end > start && buf.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static byte[] toBytes(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buf.get(i);
+        }
+        return bytes;
+    }
+
+    //position of the next \n at or after from, or size if there is none
+    private static long findLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long pos = from;
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n')
+                    return pos + i;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static void printWrongFormat(int wrongLines) {
+        for (int i = 0; i < wrongLines; i++) {
+            System.err.println("Wrong network file format. Please put in:\n" +
+                    "source_protein target_protein [weight]" +
+                    "<UniprotID_source> <UniprotID_target> [weight]\n" +
+                    "<UniprotID_source> <UniprotID_target> [weight]\n … ");
+        }
+    }
+
+    //edges of one chunk, the node IDs are local to the chunk's dictionary
+    private static class Chunk {
+        private final IdDictionary dictionary = new IdDictionary();
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private double[] weights = new double[1024];
+        private int nrOfEdges;
+        private int wrongLines;
+
+        private void add(int s, int t, double weight) {
+            if (nrOfEdges == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * nrOfEdges);
+                targets = Arrays.copyOf(targets, 2 * nrOfEdges);
+                weights = Arrays.copyOf(weights, 2 * nrOfEdges);
+            }
+            sources[nrOfEdges] = s;
+            targets[nrOfEdges] = t;
+            weights[nrOfEdges] = weight;
+            nrOfEdges++;
+        }
+    }
+}
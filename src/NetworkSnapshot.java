@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+//Binary snapshot of a parsed network: node dictionary, CSR adjacency, edge weights and the largest connected component.
+//It is keyed by the SHA-256 of the network file, and is memory mapped and bulk copied into the arrays when loaded.
+//If size and modification time of the network file are unchanged, the stored digest is trusted without rehashing.
+//The arrays are covered by a CRC32, a damaged snapshot is rewritten instead of standing in for the network file.
+public class NetworkSnapshot {
+
+    private static final byte[] MAGIC = "MUSTSNAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    //magic, version, size and modification time of the network file, its digest, the LCC flag, n, m, the bytes of the
+    //node IDs and the CRC32 of everything after the header
+    private static final int HEADER_SIZE = 8 + 4 + 8 + 8 + 32 + 1 + 4 + 4 + 4 + 4;
+
+    //the snapshot if it belongs to the network file, otherwise the network is parsed and the snapshot (re)written.
+    //If the snapshot cannot be used, the network is parsed as without a snapshot
+    public static CompactGraph loadOrCreate(String pathToNetwork, String pathToSnapshot, boolean penalized, GraphUtils gu) {
+        try {
+            return loadOrWrite(pathToNetwork, pathToSnapshot, penalized, gu);
+        } catch (IOException io) {
+            System.err.println("Cannot use the network snapshot " + pathToSnapshot + ": " + io.getMessage());
+            return CompactGraph.fromParsedGraph(gu.parseAllNodesAndEdges(pathToNetwork, penalized));
+        }
+    }
+
+    private static CompactGraph loadOrWrite(String pathToNetwork, String pathToSnapshot, boolean penalized, GraphUtils gu) throws IOException {
+        Path network = Paths.get(pathToNetwork);
+        Path snapshot = Paths.get(pathToSnapshot);
+        long sourceSize = Files.size(network);
+        long sourceModified = Files.getLastModifiedTime(network).toMillis();
+
+        byte[] digest = null;
+        if (Files.exists(snapshot)) {
+            Instant before = Instant.now();
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                byte[] storedDigest = readHeaderDigest(buf);
+                if (storedDigest != null && (buf.getLong(12) != sourceSize || buf.getLong(20) != sourceModified)) {
+                    digest = digest(network);
+                    if (!Arrays.equals(digest, storedDigest))
+                        storedDigest = null;
+                }
+                if (storedDigest != null) {
+                    try {
+                        CompactGraph graph = read(buf, penalized);
+                        System.out.println("Loaded the network snapshot " + pathToSnapshot + " in " + Duration.between(before, Instant.now()).toMillis() + " ms!");
+                        return graph;
+                    } catch (IOException | RuntimeException e) {
+                        //e.g. a truncated copy of a snapshot: its header is fine, its arrays are not
+                        System.out.println("The network snapshot " + pathToSnapshot + " is damaged (" + e + "), it will be rewritten");
+                    }
+                } else {
+                    System.out.println("The network snapshot " + pathToSnapshot + " does not match the network file, it will be rewritten");
+                }
+            }
+        }
+
+        ParsedGraph parsedGraph = gu.parseAllNodesAndEdges(pathToNetwork, false);
+        CompactGraph graph = CompactGraph.fromParsedGraph(parsedGraph);
+        if (digest == null)
+            digest = digest(network);
+        write(snapshot, graph, digest, sourceSize, sourceModified);
+        System.out.println("Wrote the network snapshot " + pathToSnapshot + "!");
+        if (penalized)
+            setUnitWeights(graph);
+        return graph;
+    }
+
+    public static byte[] digest(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buf) > 0) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //the digest stored in the header, or null if this is not a snapshot of a supported version
+    private static byte[] readHeaderDigest(ByteBuffer buf) {
+        if (buf.limit() < HEADER_SIZE)
+            return null;
+        byte[] magic = new byte[MAGIC.length];
+        buf.position(0);
+        buf.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || buf.getInt(8) != VERSION)
+            return null;
+        byte[] digest = new byte[32];
+        buf.position(28);
+        buf.get(digest);
+        return digest;
+    }
+
+    public static void write(Path snapshot, CompactGraph graph, byte[] digest, long sourceSize, long sourceModified) throws IOException {
+        int n = graph.getNodeCount();
+        int m = graph.getEdgeCount();
+        byte[][] ids = new byte[n][];
+        int idBytes = 0;
+        for (int v = 0; v < n; v++) {
+            ids[v] = graph.getUniprotID(v).getBytes(StandardCharsets.UTF_8);
+            idBytes += ids[v].length;
+        }
+        boolean[] lcc = graph.getLargestComponent();
+
+        long size = size(n, m, idBytes, lcc != null);
+        //written next to the snapshot and moved, so no reader sees a half written file. The header comes last:
+        //a file that was cut off while being written never has a valid one
+        Path directory = snapshot.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buf.position(HEADER_SIZE);
+                writeData(buf, graph, ids, lcc);
+                buf.force();
+                int crc = payloadChecksum(buf);
+
+                buf.position(0);
+                buf.put(MAGIC);
+                buf.putInt(VERSION);
+                buf.putLong(sourceSize);
+                buf.putLong(sourceModified);
+                buf.put(digest);
+                buf.put((byte) (lcc != null ? 1 : 0));
+                buf.putInt(n);
+                buf.putInt(m);
+                buf.putInt(idBytes);
+                buf.putInt(crc);
+                buf.force();
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    //the size of a snapshot file with these counts
+    private static long size(long n, long m, long idBytes, boolean hasLcc) {
+        return HEADER_SIZE + 4 * n + idBytes + 4 * (n + 1) + 2 * 4 * 2 * m + 2 * 4 * m + 8 * m + (hasLcc ? n : 0);
+    }
+
+    private static void writeData(MappedByteBuffer buf, CompactGraph graph, byte[][] ids, boolean[] lcc) {
+        int n = graph.getNodeCount();
+        int m = graph.getEdgeCount();
+        for (byte[] id : ids) {
+            buf.putInt(id.length);
+        }
+        for (byte[] id : ids) {
+            buf.put(id);
+        }
+        for (int v = 0; v <= n; v++) {
+            buf.putInt(v < n ? graph.getOffset(v) : 2 * m);
+        }
+        for (int slot = 0; slot < 2 * m; slot++) {
+            buf.putInt(graph.getNeighbour(slot));
+        }
+        for (int slot = 0; slot < 2 * m; slot++) {
+            buf.putInt(graph.getAdjacentEdge(slot));
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(graph.getEdgeSource(e));
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putInt(graph.getEdgeTarget(e));
+        }
+        for (int e = 0; e < m; e++) {
+            buf.putDouble(graph.getEdgeWeight(e));
+        }
+        if (lcc != null) {
+            for (boolean b : lcc) {
+                buf.put((byte) (b ? 1 : 0));
+            }
+        }
+    }
+
+    //the CRC32 of the bytes after the header
+    private static int payloadChecksum(ByteBuffer buf) {
+        ByteBuffer payload = buf.duplicate();
+        payload.limit(buf.capacity());
+        payload.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static CompactGraph read(MappedByteBuffer buf, boolean penalized) throws IOException {
+        //skips the header up to the LCC flag, the weights are stored as they were in the file
+        buf.position(60);
+        boolean hasLcc = buf.get() == 1;
+        int n = buf.getInt();
+        int m = buf.getInt();
+        int idBytes = buf.getInt();
+        int crc = buf.getInt();
+        if (n < 0 || m < 0 || idBytes < 0 || size(n, m, idBytes, hasLcc) != buf.limit())
+            throw new IOException("The size of the snapshot does not match its header");
+        if (payloadChecksum(buf) != crc)
+            throw new IOException("The checksum of the snapshot does not match");
+
+        int[] idLengths = readInts(buf, n);
+        long totalIdBytes = 0;
+        for (int length : idLengths) {
+            if (length < 0)
+                throw new IOException("Negative length of a node ID");
+            totalIdBytes += length;
+        }
+        if (totalIdBytes != idBytes)
+            throw new IOException("The node IDs do not match their lengths");
+        byte[] pool = new byte[idBytes];
+        buf.get(pool);
+        String[] uniprotIDs = new String[n];
+        int start = 0;
+        for (int v = 0; v < n; v++) {
+            uniprotIDs[v] = new String(pool, start, idLengths[v], StandardCharsets.UTF_8);
+            start += idLengths[v];
+        }
+
+        int[] offsets = readInts(buf, n + 1);
+        int[] targets = readInts(buf, 2 * m);
+        int[] adjacentEdges = readInts(buf, 2 * m);
+        int[] edgeSource = readInts(buf, m);
+        int[] edgeTarget = readInts(buf, m);
+        double[] edgeWeight = new double[m];
+        buf.asDoubleBuffer().get(edgeWeight);
+        buf.position(buf.position() + 8 * m);
+
+        CompactGraph graph = CompactGraph.fromArrays(uniprotIDs, offsets, targets, adjacentEdges, edgeSource, edgeTarget, edgeWeight);
+        if (hasLcc) {
+            boolean[] lcc = new boolean[n];
+            for (int v = 0; v < n; v++) {
+                lcc[v] = buf.get() == 1;
+            }
+            graph.setLargestComponent(lcc);
+        }
+        //like parseAllNodesAndEdges: the file weights are ignored if the hub penalty sets new ones
+        if (penalized)
+            setUnitWeights(graph);
+        return graph;
+    }
+
+    private static int[] readInts(ByteBuffer buf, int count) {
+        int[] values = new int[count];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * count);
+        return values;
+    }
+
+    private static void setUnitWeights(CompactGraph graph) {
+        double[] ones = new double[graph.getEdgeCount()];
+        Arrays.fill(ones, 1.0);
+        graph.setEdgeWeights(ones);
+    }
+}
@@ -7,6 +7,7 @@ public class ParsedGraph {
 
     private List<String> nodes;
     private Map<String, ParsedEdge> edges;
+    private boolean[] largestComponent;
 
     public ParsedGraph(){
         this.nodes = new ArrayList<>();
@@ -29,4 +30,13 @@ public class ParsedGraph {
     public void setEdges(Map<String, ParsedEdge> edges) {
         this.edges = edges;
     }
+
+    //membership of the largest connected component, in the order of the node list
+    public boolean[] getLargestComponent() {
+        return largestComponent;
+    }
+
+    public void setLargestComponent(boolean[] largestComponent) {
+        this.largestComponent = largestComponent;
+    }
 }
@@ -0,0 +1,50 @@
+//How often the nodes and edges of the network take part in the unique Steiner trees, counted in arrays over their
+//IDs. The trees are accepted one after the other by the computation that owns the counter, so it needs no lock;
+//the UniProt IDs are only looked up when the counts are written
+public class ParticipationCounter {
+
+    private final CompactGraph network;
+    private final int[] nodeCounts;
+    private final int[] edgeCounts;
+    private int nrOfNodes;
+    private int nrOfEdges;
+
+    public ParticipationCounter(CompactGraph network) {
+        this.network = network;
+        this.nodeCounts = new int[network.getNodeCount()];
+        this.edgeCounts = new int[network.getEdgeCount()];
+    }
+
+    //counts a tree given by the IDs of its nodes and edges in the network
+    public void add(int[] treeNodes, int[] treeEdges) {
+        for (int v : treeNodes) {
+            if (nodeCounts[v]++ == 0)
+                nrOfNodes++;
+        }
+        for (int e : treeEdges) {
+            if (edgeCounts[e]++ == 0)
+                nrOfEdges++;
+        }
+    }
+
+    public CompactGraph getNetwork() {
+        return network;
+    }
+
+    public int getNodeParticipation(int v) {
+        return nodeCounts[v];
+    }
+
+    public int getEdgeParticipation(int e) {
+        return edgeCounts[e];
+    }
+
+    //the number of nodes and edges in at least one tree
+    public int getNrOfNodes() {
+        return nrOfNodes;
+    }
+
+    public int getNrOfEdges() {
+        return nrOfEdges;
+    }
+}
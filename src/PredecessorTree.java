@@ -0,0 +1,66 @@
+import java.util.Arrays;
+
+//The part of the shortest path tree of one source that step 3 may need: the predecessor edges of the nodes on
+//the paths to its targets. It is kept instead of the paths themselves, so the terminal graph holds k such trees
+//and not k² paths, and only the paths of the MST links are read back.
+public class PredecessorTree {
+
+    private final CompactGraph graph;
+    private final int source;
+
+    //node << 32 | predecessor edge, sorted by node once all paths are added
+    private long[] entries = new long[16];
+    private int size;
+
+    public PredecessorTree(CompactGraph graph, int source) {
+        this.graph = graph;
+        this.source = source;
+    }
+
+    //adds the path to the target that the engine found in its last search from the source
+    public void addPathTo(ShortestPathEngine engine, int target) {
+        if (engine.getDistance(target) == Double.POSITIVE_INFINITY)
+            return;
+        for (int v = target; v != source; ) {
+            int e = engine.getPredecessorEdge(v);
+            if (size == entries.length)
+                entries = Arrays.copyOf(entries, 2 * size);
+            entries[size++] = ((long) v << 32) | e;
+            v = graph.getOtherEnd(e, v);
+        }
+    }
+
+    //drops the nodes that several paths share, no paths can be added afterwards
+    public void finish() {
+        Arrays.sort(entries, 0, size);
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            if (k == 0 || entries[i] != entries[k - 1])
+                entries[k++] = entries[i];
+        }
+        entries = Arrays.copyOf(entries, k);
+        size = k;
+    }
+
+    public CompactPath getPath(int target, double weight) {
+        int length = 0;
+        for (int v = target; v != source; v = graph.getOtherEnd(predecessorEdge(v), v)) {
+            length++;
+        }
+        int[] edges = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            edges[i] = predecessorEdge(v);
+            v = graph.getOtherEnd(edges[i], v);
+        }
+        return new CompactPath(weight, edges);
+    }
+
+    private int predecessorEdge(int v) {
+        int i = Arrays.binarySearch(entries, 0, size, (long) v << 32);
+        //the edge is part of the entry, so the node is usually found at the insertion point
+        if (i < 0)
+            i = -i - 1;
+        return (int) entries[i];
+    }
+}
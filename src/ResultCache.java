@@ -0,0 +1,167 @@
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+//On-disk cache of MuST results. An entry is the node and edge output file of one computation, stored under the
+//SHA-256 of the network digest, the sorted seed set and every parameter that changes the result, so a changed
+//network or parameter never hits an old entry. The modification time of an entry is its last use: when the
+//directory grows beyond the size bound, the least recently used entries are deleted.
+public class ResultCache {
+
+    //part of every key, so results of older versions of the computation are not reused
+    private static final int VERSION = 1;
+    private static final String NODES_SUFFIX = ".nodes.tsv";
+    private static final String EDGES_SUFFIX = ".edges.tsv";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public ResultCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+    }
+
+    //the cache given by -rc and -rcs, null without -rc
+    public static ResultCache fromCommandLine(CommandLine cl) throws ParseException, IOException {
+        if (!cl.hasOption("rc"))
+            return null;
+        long cacheSize = 1024;
+        if (cl.hasOption("rcs")) {
+            try {
+                cacheSize = Long.parseLong(cl.getOptionValue("rcs"));
+                if (cacheSize < 1)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException ne) {
+                System.err.println("Please specify a positive number of MB for the result cache!");
+                throw new ParseException("");
+            }
+        }
+        return new ResultCache(Paths.get(cl.getOptionValue("rc")), cacheSize << 20);
+    }
+
+    //the seeds are a set for the computation, so their order and duplicates do not change the key.
+    //The number of cores is left out, the result does not depend on it
+    public static String key(byte[] networkDigest, Collection<String> seeds, MuSTParameters parameters) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("version=").append(VERSION).append('\n');
+        sb.append("network=").append(toHex(networkDigest)).append('\n');
+        sb.append("seeds=").append(String.join(",", new TreeSet<>(seeds))).append('\n');
+        sb.append("hubPenalty=").append(parameters.isPenalized() ? Double.toString(parameters.getHubPenalty()) : "none").append('\n');
+        sb.append("multiple=").append(parameters.isMultiple()).append('\n');
+        sb.append("nrOfTrees=").append(parameters.getNrOfTrees()).append('\n');
+        sb.append("maxit=").append(parameters.getMaxit()).append('\n');
+        sb.append("lcc=").append(parameters.isLcc()).append('\n');
+        sb.append("randomSeed=").append(parameters.getRandomSeed()).append('\n');
+        sb.append("closureMode=").append(parameters.getClosureMode()).append('\n');
+        //only in the key if set, so the entries without reduction stay valid
+        if (parameters.isReduced())
+            sb.append("reduced=true").append('\n');
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //copies a cached result to the output files, false if there is none
+    public synchronized boolean copyTo(String key, String outputNodesPath, String outputEdgesPath) throws IOException {
+        Path nodes = directory.resolve(key + NODES_SUFFIX);
+        Path edges = directory.resolve(key + EDGES_SUFFIX);
+        if (!Files.exists(nodes) || !Files.exists(edges))
+            return false;
+        Files.copy(nodes, Paths.get(outputNodesPath), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(edges, Paths.get(outputEdgesPath), StandardCopyOption.REPLACE_EXISTING);
+        touch(nodes);
+        return true;
+    }
+
+    //writes a cached result, the node table followed by the edge table, false if there is none
+    public synchronized boolean writeTo(String key, BufferedWriter writer) throws IOException {
+        Path nodes = directory.resolve(key + NODES_SUFFIX);
+        Path edges = directory.resolve(key + EDGES_SUFFIX);
+        if (!Files.exists(nodes) || !Files.exists(edges))
+            return false;
+        for (Path file : new Path[]{nodes, edges}) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        touch(nodes);
+        return true;
+    }
+
+    public synchronized void put(String key, MuSTResult result) throws IOException {
+        //written next to the entry and moved, so no reader sees a half written file
+        Path tmpNodes = Files.createTempFile(directory, key, ".tmp");
+        Path tmpEdges = Files.createTempFile(directory, key, ".tmp");
+        try {
+            result.write(tmpNodes.toString(), tmpEdges.toString());
+            Files.move(tmpEdges, directory.resolve(key + EDGES_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpNodes, directory.resolve(key + NODES_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpNodes);
+            Files.deleteIfExists(tmpEdges);
+        }
+        evict();
+    }
+
+    //deletes the least recently used entries until the cache fits into maxBytes
+    private void evict() throws IOException {
+        Map<String, Long> entrySize = new HashMap<>();
+        Map<String, Long> lastUse = new HashMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                String key;
+                if (name.endsWith(NODES_SUFFIX)) {
+                    key = name.substring(0, name.length() - NODES_SUFFIX.length());
+                    lastUse.put(key, Files.getLastModifiedTime(file).toMillis());
+                } else if (name.endsWith(EDGES_SUFFIX)) {
+                    key = name.substring(0, name.length() - EDGES_SUFFIX.length());
+                } else {
+                    continue;
+                }
+                entrySize.merge(key, Files.size(file), Long::sum);
+            }
+        }
+        long total = 0;
+        for (long size : entrySize.values()) {
+            total += size;
+        }
+        if (total <= maxBytes)
+            return;
+
+        List<String> keys = new ArrayList<>(entrySize.keySet());
+        keys.sort(Comparator.comparingLong(k -> lastUse.getOrDefault(k, 0L)));
+        for (String key : keys) {
+            if (total <= maxBytes)
+                break;
+            Files.deleteIfExists(directory.resolve(key + NODES_SUFFIX));
+            Files.deleteIfExists(directory.resolve(key + EDGES_SUFFIX));
+            total -= entrySize.get(key);
+        }
+    }
+
+    private static void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+//The one thread pool of the process, shared by all parallel work: parsing, shortest paths, the iterations of -m,
+//the seed sets of a batch and the penalties of a sweep. It is a work-stealing ForkJoinPool with one thread per
+//processor. Instead of making a pool of its own, a computation limits how many of its tasks run at once; a thread
+//that waits for other tasks lets the pool start a spare thread, so nested waits do not starve it.
+//The connections of the MuSTServer keep their own threads, they block on socket I/O
+public class Scheduler {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+        thread.setName("must-worker-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+
+    public static <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    //Runs task(0) ... task(n - 1) with at most parallelism tasks at once, the calling thread is one of them.
+    //The indices are handed out one at a time, so a slow index does not hold back others. Every worker makes its
+    //own state once (e.g. a ShortestPathEngine) and uses it for all its indices. After an exception or a
+    //cancellation no further indices are started, the exception is thrown once the running ones are done
+    public static <S> void forEach(int n, int parallelism, Cancellation cancellation, Supplier<S> workerState, ObjIntConsumer<S> task) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(n);
+        Runnable worker = () -> {
+            S state = null;
+            for (int i = next.getAndIncrement(); i < n; i = next.getAndIncrement()) {
+                try {
+                    if (failure.get() == null) {
+                        cancellation.check();
+                        if (state == null)
+                            state = workerState.get();
+                        task.accept(state, i);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        //the helpers that start after all indices are taken return at once
+        for (int w = 1; w < Math.min(parallelism, n); w++) {
+            pool.execute(worker);
+        }
+        worker.run();
+        await(done);
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        if (t != null)
+            throw new IllegalStateException(t);
+    }
+
+    public static void forEach(int n, int parallelism, Cancellation cancellation, IntConsumer task) {
+        forEach(n, parallelism, cancellation, () -> Boolean.TRUE, (state, i) -> task.accept(i));
+    }
+
+    //The tasks with at most parallelism of them running at once, started in order. The futures can be read in
+    //order while later tasks still run; a cancelled future whose task has not started is skipped
+    public static <T> List<Future<T>> submitAll(List<Callable<T>> tasks, int parallelism) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < tasks.size(); i = next.getAndIncrement()) {
+                CompletableFuture<T> future = futures.get(i);
+                if (future.isDone())
+                    continue;
+                try {
+                    future.complete(tasks.get(i).call());
+                } catch (Throwable t) {
+                    //wrapped, so that a task that was cancelled by its own timeout fails with an ExecutionException
+                    //like any other failure, instead of looking like a cancelled future
+                    future.completeExceptionally(new CompletionException(t));
+                }
+            }
+        };
+        for (int w = 0; w < Math.min(parallelism, tasks.size()); w++) {
+            pool.execute(worker);
+        }
+        return new ArrayList<>(futures);
+    }
+
+    //waits for the latch; in a worker of the pool the pool may start a spare thread meanwhile
+    private static void await(CountDownLatch latch) {
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return latch.getCount() == 0;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the parallel tasks");
+        }
+    }
+}
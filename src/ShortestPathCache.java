@@ -0,0 +1,162 @@
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+//Memory-bounded LRU cache of the distances from single sources, shared by all computations of a server or batch.
+//An entry is keyed by the network, a digest of its edge weights and the source, so a hub penalty or another network
+//never hits it. Only distances are stored: the predecessors depend on the node order of each iteration and are
+//derived from the distances, see ShortestPathDags. With offHeap the entries are kept in direct buffers outside the
+//Java heap and copied into an array when they are used.
+public class ShortestPathCache {
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ShortestPathCache(long maxBytes, boolean offHeap) {
+        this.maxBytes = maxBytes;
+        this.offHeap = offHeap;
+    }
+
+    //the cache given by -spc and -spco, null without -spc
+    public static ShortestPathCache fromCommandLine(CommandLine cl) throws ParseException {
+        if (!cl.hasOption("spc"))
+            return null;
+        long cacheSize;
+        try {
+            cacheSize = Long.parseLong(cl.getOptionValue("spc"));
+            if (cacheSize < 1)
+                throw new NumberFormatException();
+        } catch (NumberFormatException ne) {
+            System.err.println("Please specify a positive number of MB for the shortest path cache!");
+            throw new ParseException("");
+        }
+        return new ShortestPathCache(cacheSize << 20, cl.hasOption("spco"));
+    }
+
+    public static void createOptions(Options options) {
+        options.addOption("spc", "pathcache", true, "Size in MB of the cache for the distances from the terminals, shared by all computations");
+        Option.builder("spc").numberOfArgs(1).type(Long.class);
+
+        options.addOption("spco", "pathcacheoffheap", false, "Keep the shortest path cache outside the Java heap");
+        Option.builder("spco").numberOfArgs(0);
+    }
+
+    //the distances from the source to all nodes. On a miss they are computed with the engine, without stopping
+    //early, so the entry can serve any set of targets. The returned array must not be changed
+    public double[] getDistances(CompactGraph graph, int source, ShortestPathEngine engine) {
+        Key key = new Key(graph.getTopologyId(), graph.getWeightsHash(), source);
+        synchronized (this) {
+            Object entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return toArray(entry);
+            }
+            misses++;
+        }
+
+        int n = graph.getNodeCount();
+        int[] allNodes = new int[n];
+        for (int v = 0; v < n; v++) {
+            allNodes[v] = v;
+        }
+        engine.run(source, allNodes);
+        double[] dist = new double[n];
+        for (int v = 0; v < n; v++) {
+            dist[v] = engine.getDistance(v);
+        }
+        put(key, dist);
+        return dist;
+    }
+
+    private synchronized void put(Key key, double[] dist) {
+        long size = 8L * dist.length;
+        if (size > maxBytes || entries.containsKey(key))
+            return;
+        Object entry = dist;
+        if (offHeap) {
+            DoubleBuffer buffer = ByteBuffer.allocateDirect(dist.length * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            buffer.put(dist);
+            entry = buffer;
+        }
+        entries.put(key, entry);
+        bytes += size;
+        Iterator<Map.Entry<Key, Object>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= 8L * length(it.next().getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static double[] toArray(Object entry) {
+        if (entry instanceof double[])
+            return (double[]) entry;
+        DoubleBuffer buffer = ((DoubleBuffer) entry).duplicate();
+        buffer.clear();
+        double[] dist = new double[buffer.capacity()];
+        buffer.get(dist);
+        return dist;
+    }
+
+    private static int length(Object entry) {
+        return entry instanceof double[] ? ((double[]) entry).length : ((DoubleBuffer) entry).capacity();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized String getStatistics() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " entries=" + entries.size() + " MB=" + (bytes >> 20);
+    }
+
+    private static class Key {
+        private final long topologyId;
+        private final long weightsHash;
+        private final int source;
+
+        private Key(long topologyId, long weightsHash, int source) {
+            this.topologyId = topologyId;
+            this.weightsHash = weightsHash;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return topologyId == key.topologyId && weightsHash == key.weightsHash && source == key.source;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(topologyId, weightsHash, source);
+        }
+    }
+}
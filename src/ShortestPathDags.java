@@ -0,0 +1,267 @@
+import java.util.*;
+
+//Distances from every terminal, computed once for all iterations of -m.
+//Shuffling the node order never changes a distance, only which of several equally short paths is taken.
+//The edges u -> v with dist[u] + w(u, v) == dist[v] form the shortest path DAG of a terminal, and the path a
+//Dijkstra on a shuffled view would return is found by walking the DAG back from the target and taking the
+//predecessor that comes first by (dist[u], rank[u]), see LazyPredecessorPaths. Requires positive edge weights.
+public class ShortestPathDags {
+
+    //above this many cached distances (512 MB) the iterations compute their own shortest paths
+    public static final long MAX_CACHED_DISTANCES = 1L << 26;
+
+    private final CompactGraph graph;
+    private final int[] terminals;
+    //the distances from the i-th terminal, and the position of every node among the terminals (-1 for the others)
+    private final double[][] distances;
+    private final int[] terminalIndex;
+    private final boolean singlePaths;
+    private final ShortestPathCache cache;
+
+    public ShortestPathDags(CompactGraph graph, int[] terminals, boolean parallel, int numberOfCores) {
+        this(graph, terminals, parallel, numberOfCores, null);
+    }
+
+    //with a cache, the distances of terminals seen by earlier computations are reused
+    public ShortestPathDags(CompactGraph graph, int[] terminals, boolean parallel, int numberOfCores, ShortestPathCache cache) {
+        this(graph, terminals, parallel, numberOfCores, cache, Cancellation.NONE);
+    }
+
+    public ShortestPathDags(CompactGraph graph, int[] terminals, boolean parallel, int numberOfCores, ShortestPathCache cache, Cancellation cancellation) {
+        this.graph = graph;
+        this.cache = cache;
+        this.terminals = terminals.clone();
+
+        System.out.println("Computing the shortest path DAGs of " + terminals.length + " terminals ...");
+        double[][] dists = new double[this.terminals.length][];
+        if (parallel) {
+            Scheduler.forEach(this.terminals.length, numberOfCores, cancellation,
+                    () -> ShortestPathEngine.forGraph(graph), (engine, i) -> dists[i] = distancesFrom(engine, this.terminals[i]));
+        } else {
+            ShortestPathEngine engine = ShortestPathEngine.forGraph(graph);
+            for (int i = 0; i < this.terminals.length; i++) {
+                cancellation.check();
+                dists[i] = distancesFrom(engine, this.terminals[i]);
+            }
+        }
+        this.distances = dists;
+        this.terminalIndex = new int[graph.getNodeCount()];
+        Arrays.fill(terminalIndex, -1);
+        for (int i = 0; i < this.terminals.length; i++) {
+            terminalIndex[this.terminals[i]] = i;
+        }
+
+        this.singlePaths = checkSinglePaths();
+        System.out.println("Done with the shortest path DAGs!");
+    }
+
+    public static boolean isApplicable(CompactGraph graph, int[] terminals) {
+        return graph.getMinWeight() > 0 && (long) terminals.length * graph.getNodeCount() <= MAX_CACHED_DISTANCES;
+    }
+
+    private double[] distancesFrom(ShortestPathEngine engine, int source) {
+        if (cache != null)
+            return cache.getDistances(graph, source, engine);
+        engine.run(source, this.terminals);
+        double[] dist = new double[graph.getNodeCount()];
+        for (int v = 0; v < dist.length; v++) {
+            dist[v] = engine.getDistance(v);
+        }
+        return dist;
+    }
+
+    //the terminal graph for the node order of the given view, the same as step 1 would compute on it
+    //only the paths of the MST links are read back, see TerminalClosure.getPath
+    public TerminalClosure getTerminalClosure(CompactGraph view, int[] orderedTerminals) {
+        TerminalClosure closure = new TerminalClosure(orderedTerminals);
+        for (int i = 0; i < orderedTerminals.length; i++) {
+            double[] dist = distancesFrom(orderedTerminals[i]);
+            for (int j = i + 1; j < orderedTerminals.length; j++) {
+                closure.setDistance(i, j, dist[orderedTerminals[j]]);
+            }
+        }
+        closure.setDags(this, view);
+        return closure;
+    }
+
+    //the path a Dijkstra from the source on the view would return, null if the target is not reachable
+    public CompactPath getPath(CompactGraph view, int source, int target) {
+        return getPath(view, distancesFrom(source), source, target);
+    }
+
+    private double[] distancesFrom(int terminal) {
+        return distances[terminalIndex[terminal]];
+    }
+
+    private CompactPath getPath(CompactGraph view, double[] dist, int source, int target) {
+        if (dist[target] == Double.POSITIVE_INFINITY)
+            return null;
+        //the edges from the target back to the source, reversed at the end
+        int[] edges = new int[16];
+        int length = 0;
+        for (int v = target; v != source; ) {
+            int e = predecessorEdge(view, dist, v);
+            if (length == edges.length)
+                edges = Arrays.copyOf(edges, 2 * length);
+            edges[length++] = e;
+            v = graph.getOtherEnd(e, v);
+        }
+        int[] path = new int[length];
+        for (int i = 0; i < length; i++) {
+            path[i] = edges[length - 1 - i];
+        }
+        return new CompactPath(dist[target], path);
+    }
+
+    private int predecessorEdge(CompactGraph view, double[] dist, int v) {
+        int best = -1;
+        int bestNode = -1;
+        for (int slot = graph.getOffset(v), end = graph.getOffset(v + 1); slot < end; slot++) {
+            int u = graph.getNeighbour(slot);
+            if (dist[u] + graph.getSlotWeight(slot) != dist[v])
+                continue;
+            if (best == -1 || dist[u] < dist[bestNode] || (dist[u] == dist[bestNode] && view.getRank(u) < view.getRank(bestNode))) {
+                best = graph.getAdjacentEdge(slot);
+                bestNode = u;
+            }
+        }
+        return best;
+    }
+
+    //true if the DAG of every terminal holds exactly one path to each other terminal
+    private boolean checkSinglePaths() {
+        int n = graph.getNodeCount();
+        boolean[] visited = new boolean[n];
+        //every node is visited at most once per source
+        int[] stack = new int[n];
+        int[] visitedNodes = new int[n];
+        for (int i = 0; i < terminals.length; i++) {
+            int s = terminals[i];
+            double[] dist = distances[i];
+            int nrOfVisited = 0;
+            for (int t : terminals) {
+                if (t == s || dist[t] == Double.POSITIVE_INFINITY || visited[t])
+                    continue;
+                visited[t] = true;
+                visitedNodes[nrOfVisited++] = t;
+                int top = 0;
+                stack[top++] = t;
+                while (top > 0) {
+                    int v = stack[--top];
+                    int preds = 0;
+                    for (int slot = graph.getOffset(v), end = graph.getOffset(v + 1); slot < end; slot++) {
+                        int u = graph.getNeighbour(slot);
+                        if (dist[u] + graph.getSlotWeight(slot) != dist[v])
+                            continue;
+                        preds++;
+                        if (!visited[u]) {
+                            visited[u] = true;
+                            visitedNodes[nrOfVisited++] = u;
+                            stack[top++] = u;
+                        }
+                    }
+                    if (preds > 1)
+                        return false;
+                }
+            }
+            for (int j = 0; j < nrOfVisited; j++) {
+                visited[visitedNodes[j]] = false;
+            }
+        }
+        return true;
+    }
+
+    //Equal distances only matter to step 2 if they compete for the MST, its ties are broken by the pair index and so by
+    //the node order. The minimum spanning forest is unique if every link outside the one found here is longer than
+    //the longest link on the tree path between its ends, then every node order gives the same MST
+    private boolean hasUniqueSpanningTree(int[] terminalNodes) {
+        int k = terminalNodes.length;
+        double[][] rows = new double[k][];
+        for (int i = 0; i < k; i++) {
+            rows[i] = distancesFrom(terminalNodes[i]);
+        }
+
+        //Prim on the terminal graph, a new component starts at its first terminal
+        boolean[] inTree = new boolean[k];
+        double[] key = new double[k];
+        int[] parent = new int[k];
+        Arrays.fill(key, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
+        for (int added = 0; added < k; added++) {
+            int u = -1;
+            for (int v = 0; v < k; v++) {
+                if (!inTree[v] && (u == -1 || key[v] < key[u]))
+                    u = v;
+            }
+            inTree[u] = true;
+            for (int v = 0; v < k; v++) {
+                double d = rows[u][terminalNodes[v]];
+                if (!inTree[v] && d < key[v]) {
+                    key[v] = d;
+                    parent[v] = u;
+                }
+            }
+        }
+
+        //the forest as adjacency lists, the link to the parent has the weight key[v]
+        int[] offsets = new int[k + 1];
+        for (int v = 0; v < k; v++) {
+            if (parent[v] != -1) {
+                offsets[v + 1]++;
+                offsets[parent[v] + 1]++;
+            }
+        }
+        for (int v = 0; v < k; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, k);
+        int[] neighbours = new int[offsets[k]];
+        double[] weights = new double[offsets[k]];
+        for (int v = 0; v < k; v++) {
+            int p = parent[v];
+            if (p != -1) {
+                neighbours[fill[v]] = p;
+                weights[fill[v]++] = key[v];
+                neighbours[fill[p]] = v;
+                weights[fill[p]++] = key[v];
+            }
+        }
+
+        //from every terminal: the longest link on the tree path to each terminal of its component
+        double[] longest = new double[k];
+        int[] reached = new int[k];
+        int[] stack = new int[k];
+        for (int r = 0; r < k; r++) {
+            int stamp = r + 1;
+            reached[r] = stamp;
+            longest[r] = 0;
+            int top = 0;
+            stack[top++] = r;
+            while (top > 0) {
+                int u = stack[--top];
+                for (int slot = offsets[u]; slot < offsets[u + 1]; slot++) {
+                    int v = neighbours[slot];
+                    if (reached[v] == stamp)
+                        continue;
+                    reached[v] = stamp;
+                    longest[v] = Math.max(longest[u], weights[slot]);
+                    stack[top++] = v;
+                }
+            }
+            for (int v = r + 1; v < k; v++) {
+                if (parent[v] == r || parent[r] == v)
+                    continue;
+                double d = rows[r][terminalNodes[v]];
+                if (d != Double.POSITIVE_INFINITY && reached[v] == stamp && d <= longest[v])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    //Every shortest path between terminals is unique and the terminal graph of these terminals has only one MST:
+    //then every node order gives the same terminal graph and the same MST in step 2
+    public boolean hasSingleTerminalGraph(int[] terminalNodes) {
+        return singlePaths && hasUniqueSpanningTree(terminalNodes);
+    }
+}
@@ -0,0 +1,39 @@
+//Single-source shortest paths on the CompactGraph as used by step 1.
+//All engines return the same paths: a node's predecessor is the neighbour u with dist[u] + w(u, v) == dist[v]
+//that comes first by (dist[u], rank[u]), which is the node that reaches v first in CompactDijkstra.
+public interface ShortestPathEngine {
+
+    //search that stops as soon as all targets are settled
+    void run(int source, int[] targets);
+
+    double getDistance(int target);
+
+    //only valid for the targets of the last search; null if the target is not reachable
+    CompactPath getPath(int target);
+
+    //the edge to the predecessor of v, -1 for the source; only valid for the nodes on the paths of getPath
+    int getPredecessorEdge(int v);
+
+    default CompactPath findPathBetween(int source, int target) {
+        run(source, new int[]{target});
+        return getPath(target);
+    }
+
+    //BFS for uniform weights, a bucket queue for small integer weights, Dijkstra for everything else
+    static ShortestPathEngine forGraph(CompactGraph graph) {
+        if (graph.getUniformWeight() > 0)
+            return new BfsShortestPaths(graph, graph.getUniformWeight());
+        if (graph.getMaxIntegerWeight() > 0 && graph.getMaxIntegerWeight() <= BucketShortestPaths.MAX_BUCKET_WEIGHT)
+            return new BucketShortestPaths(graph, graph.getMaxIntegerWeight());
+        return new CompactDijkstra(graph);
+    }
+
+    static String describe(CompactGraph graph) {
+        ShortestPathEngine engine = forGraph(graph);
+        if (engine instanceof BfsShortestPaths)
+            return "BFS (all edges have weight " + graph.getUniformWeight() + ")";
+        if (engine instanceof BucketShortestPaths)
+            return "bucket queue (integer weights up to " + graph.getMaxIntegerWeight() + ")";
+        return "Dijkstra";
+    }
+}
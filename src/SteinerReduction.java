@@ -0,0 +1,409 @@
+import org.jgrapht.graph.SimpleWeightedGraph;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+//Reduction of the weighted network before the Steiner tree computation. Nothing that is removed can be part of
+//a shortest path between two terminals:
+// - nodes that no terminal can reach, and non-terminal leaves (again and again, so whole branches without terminals go)
+// - non-terminal nodes of degree 2, their two edges are contracted into one edge with the summed weight
+// - long edges: an edge is removed if a bounded Dijkstra finds a strictly shorter path between its ends
+//The contracted edges remember the edges of the network they stand for, the trees are mapped back to them.
+//Ties between equally short paths can be broken differently than on the whole network, so the trees can differ
+//from the ones without the reduction, their weights do not get worse.
+public class SteinerReduction {
+
+    //the bounded Dijkstra of the long edge test gives up after settling this many nodes
+    private static final int LONG_EDGE_SEARCH_LIMIT = 64;
+    private static final int MAX_ROUNDS = 4;
+
+    private final CompactGraph graph;
+    private final boolean[] isTerminal;
+
+    //the working graph: edges are never reused, removed ones are marked dead
+    private int[] edgeSource;
+    private int[] edgeTarget;
+    private double[] edgeWeight;
+    private boolean[] edgeAlive;
+    private int[][] edgePath;
+    private int nrOfEdges;
+    private final int[][] incident;
+    private final int[] incidentCount;
+    private final int[] degree;
+    private final boolean[] nodeAlive;
+    private final Map<Long, Integer> edgeBetween;
+
+    private int removedLeaves;
+    private int contractedNodes;
+    private int removedLongEdges;
+    private int unreachableNodes;
+
+    private CompactGraph reducedGraph;
+    private int[] reducedTerminals;
+    private int[] originalNode;
+    private int[] pathOffsets;
+    private int[] pathEdges;
+
+    public SteinerReduction(CompactGraph graph, int[] terminals) {
+        Instant before = Instant.now();
+        this.graph = graph;
+        int n = graph.getNodeCount();
+        int m = graph.getEdgeCount();
+        this.isTerminal = new boolean[n];
+        for (int t : terminals) {
+            isTerminal[t] = true;
+        }
+
+        this.edgeSource = new int[m + 16];
+        this.edgeTarget = new int[m + 16];
+        this.edgeWeight = new double[m + 16];
+        this.edgeAlive = new boolean[m + 16];
+        this.edgePath = new int[m + 16][];
+        this.incident = new int[n][];
+        this.incidentCount = new int[n];
+        this.degree = new int[n];
+        this.nodeAlive = new boolean[n];
+        this.edgeBetween = new HashMap<>(2 * m);
+        for (int v = 0; v < n; v++) {
+            incident[v] = new int[Math.max(2, graph.getDegree(v))];
+            nodeAlive[v] = true;
+        }
+        for (int e = 0; e < m; e++) {
+            addEdge(graph.getEdgeSource(e), graph.getEdgeTarget(e), graph.getEdgeWeight(e), new int[]{e});
+        }
+
+        removeUnreachable(terminals);
+        Deque<Integer> candidates = new ArrayDeque<>();
+        for (int v = 0; v < n; v++) {
+            candidates.add(v);
+        }
+        reduceDegrees(candidates);
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            if (!removeLongEdges(candidates))
+                break;
+            reduceDegrees(candidates);
+        }
+        buildReducedGraph(terminals);
+
+        System.out.println("Reduced the network from " + n + " nodes and " + m + " edges to " + reducedGraph.getNodeCount() + " nodes and "
+                + reducedGraph.getEdgeCount() + " edges (" + unreachableNodes + " unreachable nodes, " + removedLeaves + " leaves, "
+                + contractedNodes + " degree-2 nodes, " + removedLongEdges + " long edges) in " + Duration.between(before, Instant.now()).toMillis() + " ms!");
+    }
+
+    private int addEdge(int s, int t, double w, int[] path) {
+        if (nrOfEdges == edgeSource.length) {
+            int capacity = 2 * nrOfEdges;
+            edgeSource = Arrays.copyOf(edgeSource, capacity);
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+            edgeAlive = Arrays.copyOf(edgeAlive, capacity);
+            edgePath = Arrays.copyOf(edgePath, capacity);
+        }
+        int e = nrOfEdges++;
+        edgeSource[e] = s;
+        edgeTarget[e] = t;
+        edgeWeight[e] = w;
+        edgeAlive[e] = true;
+        edgePath[e] = path;
+        addIncident(s, e);
+        addIncident(t, e);
+        edgeBetween.put(pairKey(s, t), e);
+        return e;
+    }
+
+    private void addIncident(int v, int e) {
+        if (incidentCount[v] == incident[v].length) {
+            //drop the dead edges before growing
+            int k = 0;
+            for (int i = 0; i < incidentCount[v]; i++) {
+                if (edgeAlive[incident[v][i]])
+                    incident[v][k++] = incident[v][i];
+            }
+            incidentCount[v] = k;
+            if (k == incident[v].length)
+                incident[v] = Arrays.copyOf(incident[v], 2 * k);
+        }
+        incident[v][incidentCount[v]++] = e;
+        degree[v]++;
+    }
+
+    private void removeEdge(int e) {
+        edgeAlive[e] = false;
+        degree[edgeSource[e]]--;
+        degree[edgeTarget[e]]--;
+        edgeBetween.remove(pairKey(edgeSource[e], edgeTarget[e]));
+    }
+
+    private int otherEnd(int e, int v) {
+        return edgeSource[e] == v ? edgeTarget[e] : edgeSource[e];
+    }
+
+    //the nodes in components without a terminal
+    private void removeUnreachable(int[] terminals) {
+        int n = graph.getNodeCount();
+        boolean[] reached = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int t : terminals) {
+            if (!reached[t]) {
+                reached[t] = true;
+                queue[tail++] = t;
+            }
+        }
+        while (head < tail) {
+            int u = queue[head++];
+            for (int slot = graph.getOffset(u), end = graph.getOffset(u + 1); slot < end; slot++) {
+                int v = graph.getNeighbour(slot);
+                if (!reached[v]) {
+                    reached[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (reached[v])
+                continue;
+            for (int i = 0; i < incidentCount[v]; i++) {
+                if (edgeAlive[incident[v][i]])
+                    removeEdge(incident[v][i]);
+            }
+            nodeAlive[v] = false;
+            unreachableNodes++;
+        }
+    }
+
+    //removes non-terminal leaves and contracts non-terminal nodes of degree 2 until none of the candidates is left
+    private void reduceDegrees(Deque<Integer> candidates) {
+        while (!candidates.isEmpty()) {
+            int v = candidates.poll();
+            if (!nodeAlive[v] || isTerminal[v] || degree[v] > 2)
+                continue;
+            int[] edges = aliveIncident(v);
+            if (edges.length == 0) {
+                nodeAlive[v] = false;
+                removedLeaves++;
+            } else if (edges.length == 1) {
+                int u = otherEnd(edges[0], v);
+                removeEdge(edges[0]);
+                nodeAlive[v] = false;
+                removedLeaves++;
+                candidates.add(u);
+            } else {
+                contract(v, edges[0], edges[1]);
+                candidates.add(otherEnd(edges[0], v));
+                candidates.add(otherEnd(edges[1], v));
+            }
+        }
+    }
+
+    //u - v - w becomes u - w. If u and w are already connected, the shorter of the two connections is kept
+    private void contract(int v, int e1, int e2) {
+        int u = otherEnd(e1, v);
+        int w = otherEnd(e2, v);
+        double weight = edgeWeight[e1] + edgeWeight[e2];
+        removeEdge(e1);
+        removeEdge(e2);
+        nodeAlive[v] = false;
+        contractedNodes++;
+
+        Integer existing = edgeBetween.get(pairKey(u, w));
+        if (existing != null) {
+            if (edgeWeight[existing] <= weight)
+                return;
+            removeEdge(existing);
+        }
+        int[] path = new int[edgePath[e1].length + edgePath[e2].length];
+        System.arraycopy(edgePath[e1], 0, path, 0, edgePath[e1].length);
+        System.arraycopy(edgePath[e2], 0, path, edgePath[e1].length, edgePath[e2].length);
+        addEdge(u, w, weight, path);
+    }
+
+    private int[] aliveIncident(int v) {
+        int[] edges = new int[degree[v]];
+        int k = 0;
+        for (int i = 0; i < incidentCount[v] && k < edges.length; i++) {
+            if (edgeAlive[incident[v][i]])
+                edges[k++] = incident[v][i];
+        }
+        return edges;
+    }
+
+    //removes every edge that has a strictly shorter detour, the ends of removed edges become candidates again
+    private boolean removeLongEdges(Deque<Integer> candidates) {
+        int n = graph.getNodeCount();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        int[] touched = new int[n];
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        boolean removed = false;
+        int edgesBefore = nrOfEdges;
+        for (int e = 0; e < edgesBefore; e++) {
+            if (!edgeAlive[e])
+                continue;
+            if (hasShorterDetour(e, dist, touched, heap)) {
+                removeEdge(e);
+                removedLongEdges++;
+                candidates.add(edgeSource[e]);
+                candidates.add(edgeTarget[e]);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private boolean hasShorterDetour(int e, double[] dist, int[] touched, IndexedMinHeap heap) {
+        //the search starts at the end with the smaller degree, it settles fewer hubs
+        int s = degree[edgeSource[e]] <= degree[edgeTarget[e]] ? edgeSource[e] : edgeTarget[e];
+        int t = otherEnd(e, s);
+        double bound = edgeWeight[e];
+        int nrOfTouched = 0;
+        int settled = 0;
+        boolean found = false;
+        dist[s] = 0;
+        touched[nrOfTouched++] = s;
+        heap.insertOrDecrease(s, 0);
+        while (!heap.isEmpty() && !found && settled < LONG_EDGE_SEARCH_LIMIT) {
+            int u = heap.poll();
+            double du = dist[u];
+            if (du >= bound)
+                break;
+            settled++;
+            for (int i = 0; i < incidentCount[u]; i++) {
+                int f = incident[u][i];
+                if (f == e || !edgeAlive[f])
+                    continue;
+                int v = otherEnd(f, u);
+                double alt = du + edgeWeight[f];
+                if (alt >= bound || alt >= dist[v])
+                    continue;
+                if (v == t) {
+                    found = true;
+                    break;
+                }
+                if (dist[v] == Double.POSITIVE_INFINITY)
+                    touched[nrOfTouched++] = v;
+                dist[v] = alt;
+                heap.insertOrDecrease(v, alt);
+            }
+        }
+        heap.clear();
+        for (int i = 0; i < nrOfTouched; i++) {
+            dist[touched[i]] = Double.POSITIVE_INFINITY;
+        }
+        return found;
+    }
+
+    //the remaining nodes keep their order, the network edges come before the contracted ones
+    private void buildReducedGraph(int[] terminals) {
+        int n = graph.getNodeCount();
+        int[] newID = new int[n];
+        int nReduced = 0;
+        for (int v = 0; v < n; v++) {
+            newID[v] = nodeAlive[v] ? nReduced++ : -1;
+        }
+        String[] uniprotIDs = new String[nReduced];
+        originalNode = new int[nReduced];
+        for (int v = 0; v < n; v++) {
+            if (newID[v] != -1) {
+                uniprotIDs[newID[v]] = graph.getUniprotID(v);
+                originalNode[newID[v]] = v;
+            }
+        }
+
+        int mReduced = 0;
+        int nrOfPathEdges = 0;
+        for (int e = 0; e < nrOfEdges; e++) {
+            if (edgeAlive[e]) {
+                mReduced++;
+                nrOfPathEdges += edgePath[e].length;
+            }
+        }
+        int[] src = new int[mReduced];
+        int[] targ = new int[mReduced];
+        double[] w = new double[mReduced];
+        pathOffsets = new int[mReduced + 1];
+        pathEdges = new int[nrOfPathEdges];
+        int k = 0;
+        for (int e = 0; e < nrOfEdges; e++) {
+            if (!edgeAlive[e])
+                continue;
+            src[k] = newID[edgeSource[e]];
+            targ[k] = newID[edgeTarget[e]];
+            w[k] = edgeWeight[e];
+            System.arraycopy(edgePath[e], 0, pathEdges, pathOffsets[k], edgePath[e].length);
+            pathOffsets[k + 1] = pathOffsets[k] + edgePath[e].length;
+            k++;
+        }
+        reducedGraph = CompactGraph.fromEdges(uniprotIDs, src, targ, w);
+
+        reducedTerminals = new int[terminals.length];
+        for (int i = 0; i < terminals.length; i++) {
+            reducedTerminals[i] = newID[terminals[i]];
+        }
+    }
+
+    private static long pairKey(int a, int b) {
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        return ((long) lo << 32) | (hi & 0xffffffffL);
+    }
+
+    public CompactGraph getReducedGraph() {
+        return reducedGraph;
+    }
+
+    //the terminals as nodes of the reduced graph, in the same order
+    public int[] getTerminals() {
+        return reducedTerminals;
+    }
+
+    //the tree in the network, the contracted edges are replaced by the edges they stand for
+    public SimpleWeightedGraph<Vertex, Link> toNetworkTree(int[] treeNodes, int[] treeEdges) {
+        return graph.toSimpleWeightedGraph(toNetworkNodes(treeNodes, treeEdges), toNetworkEdges(treeEdges));
+    }
+
+    //the nodes of the tree in the network, with the inner nodes of the contracted edges
+    public int[] toNetworkNodes(int[] treeNodes, int[] treeEdges) {
+        Set<Integer> nodes = new LinkedHashSet<>();
+        for (int v : treeNodes) {
+            nodes.add(originalNode[v]);
+        }
+        for (int e : toNetworkEdges(treeEdges)) {
+            nodes.add(graph.getEdgeSource(e));
+            nodes.add(graph.getEdgeTarget(e));
+        }
+        int[] nodeArray = new int[nodes.size()];
+        int i = 0;
+        for (int v : nodes) {
+            nodeArray[i++] = v;
+        }
+        return nodeArray;
+    }
+
+    //the weight of the tree, summed over the edges of the network
+    public double getNetworkWeight(int[] treeEdges) {
+        double weight = 0D;
+        for (int e : toNetworkEdges(treeEdges)) {
+            weight += graph.getEdgeWeight(e);
+        }
+        return weight;
+    }
+
+    //the edges of the tree in the network
+    public int[] toNetworkEdges(int[] treeEdges) {
+        int size = 0;
+        for (int e : treeEdges) {
+            size += pathOffsets[e + 1] - pathOffsets[e];
+        }
+        int[] edges = new int[size];
+        int k = 0;
+        for (int e : treeEdges) {
+            for (int i = pathOffsets[e]; i < pathOffsets[e + 1]; i++) {
+                edges[k++] = pathEdges[i];
+            }
+        }
+        return edges;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//The complete terminal graph of step 1 as a dense distance matrix: the distance between the i-th and the j-th
+//terminal is at i * k + j (infinite if they are not connected).
+//Step 2 runs Prim on the matrix in O(k²) instead of sorting all k² / 2 terminal links for Kruskal.
+//The paths are not stored: they are read back for the MST links only, from the PredecessorTree of the i-th
+//terminal or from the shortest path DAGs.
+public class TerminalClosure {
+
+    private final int[] terminals;
+    private final int k;
+    private final double[] distances;
+    private final PredecessorTree[] trees;
+    private ShortestPathDags dags;
+    private CompactGraph view;
+
+    public TerminalClosure(int[] terminals) {
+        this.terminals = terminals;
+        this.k = terminals.length;
+        this.distances = new double[k * k];
+        this.trees = new PredecessorTree[k];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < k; i++) {
+            distances[i * k + i] = 0;
+        }
+    }
+
+    //the distance between the i-th and the j-th terminal, infinite if they are not connected
+    public void setDistance(int i, int j, double distance) {
+        distances[i * k + j] = distance;
+        distances[j * k + i] = distance;
+    }
+
+    public double getDistance(int i, int j) {
+        return distances[i * k + j];
+    }
+
+    //the paths from the i-th terminal to the terminals after it
+    public void setPredecessorTree(int i, PredecessorTree tree) {
+        trees[i] = tree;
+    }
+
+    //the paths are read from the DAGs, in the node order of the view
+    public void setDags(ShortestPathDags dags, CompactGraph view) {
+        this.dags = dags;
+        this.view = view;
+    }
+
+    //the shortest path between the i-th and the j-th terminal, i < j
+    public CompactPath getPath(int i, int j) {
+        if (dags != null)
+            return dags.getPath(view, terminals[i], terminals[j]);
+        return trees[i].getPath(terminals[j], distances[i * k + j]);
+    }
+
+    //Prim on the matrix. Equal distances are ordered by the pair (i, j), which is the order of the terminal links
+    //for Kruskal, so the tree is the same as with KruskalMinimumSpanningTree. The links come in Kruskal's order,
+    //by distance and pair; terminals in different components give a spanning forest like Kruskal does
+    public List<TerminalLink> minimumSpanningTree() {
+        boolean[] inTree = new boolean[k];
+        double[] key = new double[k];
+        long[] keyPair = new long[k];
+        int[] keyFrom = new int[k];
+        Arrays.fill(key, Double.POSITIVE_INFINITY);
+        Arrays.fill(keyPair, Long.MAX_VALUE);
+        Arrays.fill(keyFrom, -1);
+
+        List<long[]> edges = new ArrayList<>(Math.max(0, k - 1));
+        int next = 0;
+        for (int added = 0; added < k; added++) {
+            if (next == -1) {
+                //the component is spanned, the next one starts at its first terminal
+                next = 0;
+                while (inTree[next]) {
+                    next++;
+                }
+            }
+            int u = next;
+            inTree[u] = true;
+            if (keyFrom[u] != -1)
+                edges.add(new long[]{Double.doubleToLongBits(key[u]), keyPair[u]});
+
+            //one pass over the row of u lowers the keys and finds the next terminal
+            next = -1;
+            double nextKey = Double.POSITIVE_INFINITY;
+            long nextPair = Long.MAX_VALUE;
+            int row = u * k;
+            for (int v = 0; v < k; v++) {
+                if (inTree[v])
+                    continue;
+                double d = distances[row + v];
+                if (d != Double.POSITIVE_INFINITY) {
+                    long pair = u < v ? (long) u * k + v : (long) v * k + u;
+                    if (d < key[v] || (d == key[v] && pair < keyPair[v])) {
+                        key[v] = d;
+                        keyPair[v] = pair;
+                        keyFrom[v] = u;
+                    }
+                }
+                if (key[v] != Double.POSITIVE_INFINITY && (key[v] < nextKey || (key[v] == nextKey && keyPair[v] < nextPair))) {
+                    next = v;
+                    nextKey = key[v];
+                    nextPair = keyPair[v];
+                }
+            }
+        }
+
+        //the order in which Kruskal would have accepted them
+        edges.sort((a, b) -> {
+            int c = Double.compare(Double.longBitsToDouble(a[0]), Double.longBitsToDouble(b[0]));
+            return c != 0 ? c : Long.compare(a[1], b[1]);
+        });
+        List<TerminalLink> mst = new ArrayList<>(edges.size());
+        for (long[] edge : edges) {
+            int i = (int) (edge[1] / k);
+            int j = (int) (edge[1] % k);
+            mst.add(new TerminalLink(terminals[i], terminals[j], getPath(i, j)));
+        }
+        return mst;
+    }
+}
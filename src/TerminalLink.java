@@ -0,0 +1,29 @@
+//Edge of the terminal graph of the CompactGraph pipeline: the shortest path between two terminals
+public class TerminalLink {
+
+    private final int source;
+    private final int target;
+    private final CompactPath path;
+
+    public TerminalLink(int source, int target, CompactPath path) {
+        this.source = source;
+        this.target = target;
+        this.path = path;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public double getWeight() {
+        return path.getWeight();
+    }
+
+    public CompactPath getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+//The canonical form of a Steiner tree: its sorted node and edge IDs with a 128 bit hash over them. The IDs are
+//shared by all views of a graph, so trees of different iterations are equal if and only if their fingerprints are.
+//Equality compares the hash first and the IDs only if the hashes collide
+public class TreeFingerprint {
+
+    private final int[] nodes;
+    private final int[] edges;
+    private final long hash1;
+    private final long hash2;
+
+    public TreeFingerprint(int[] treeNodes, int[] treeEdges) {
+        this.nodes = treeNodes.clone();
+        this.edges = treeEdges.clone();
+        Arrays.sort(nodes);
+        Arrays.sort(edges);
+
+        //two independent 64 bit hashes, the node and edge counts keep the two arrays apart
+        long h1 = 0x9E3779B97F4A7C15L ^ nodes.length;
+        long h2 = 0xC2B2AE3D27D4EB4FL ^ edges.length;
+        for (int v : nodes) {
+            h1 = mix(h1 ^ v, 0xBF58476D1CE4E5B9L);
+            h2 = mix(h2 ^ v, 0x94D049BB133111EBL);
+        }
+        for (int e : edges) {
+            h1 = mix(h1 ^ ~e, 0xBF58476D1CE4E5B9L);
+            h2 = mix(h2 ^ ~e, 0x94D049BB133111EBL);
+        }
+        this.hash1 = h1;
+        this.hash2 = h2;
+    }
+
+    private static long mix(long h, long multiplier) {
+        h *= multiplier;
+        return h ^ (h >>> 31);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TreeFingerprint that = (TreeFingerprint) o;
+        return hash1 == that.hash1 && hash2 == that.hash2 && Arrays.equals(edges, that.edges) && Arrays.equals(nodes, that.nodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash1 ^ (hash1 >>> 32));
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+//Writes every unique Steiner tree as soon as it is accepted, one line per tree:
+//iteration  weight  number of edges  edges as source target pairs, separated by commas (P1 Q2,Q2 P3).
+//The first tree has iteration 0. A path ending in .gz is written gzip compressed; every tree is flushed, so the
+//file can be read while the computation is still running
+public class TreeWriter implements Closeable {
+
+    private final BufferedWriter writer;
+    private boolean failed;
+
+    public TreeWriter(String path) throws IOException {
+        OutputStream out = Files.newOutputStream(Paths.get(path));
+        if (path.endsWith(".gz"))
+            out = new GZIPOutputStream(out, true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("iteration\tweight\tnr_of_edges\tedges");
+        writer.newLine();
+        writer.flush();
+    }
+
+    //the tree given by the IDs of its edges in the network
+    public void write(int iteration, double weight, CompactGraph network, int[] treeEdges) throws IOException {
+        try {
+            writer.write(iteration + "\t" + weight + "\t" + treeEdges.length + "\t");
+            for (int i = 0; i < treeEdges.length; i++) {
+                if (i > 0)
+                    writer.write(',');
+                writer.write(network.getUniprotID(network.getEdgeSource(treeEdges[i])));
+                writer.write(' ');
+                writer.write(network.getUniprotID(network.getEdgeTarget(treeEdges[i])));
+            }
+            writer.newLine();
+            writer.flush();
+        } catch (IOException ie) {
+            failed = true;
+            throw ie;
+        }
+    }
+
+    //true if a tree could not be written
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.*;
+
+//Mehlhorn's construction of the terminal graph: one multi-source Dijkstra from all terminals splits the
+//network into Voronoi regions, every edge between two regions is a candidate "bridge" between their terminals.
+//The MST of the cheapest bridges is an MST of the complete terminal graph, so KMB keeps its 2-approximation
+//while the terminal graph only has O(E) instead of O(k²) edges.
+public class VoronoiClosure {
+
+    private final CompactGraph graph;
+    private final int[] terminals;
+
+    private final double[] dist;
+    private final int[] predEdge;
+    private final int[] base;
+
+    public VoronoiClosure(CompactGraph graph, int[] terminals) {
+        this.graph = graph;
+        this.terminals = terminals;
+        this.dist = new double[graph.getNodeCount()];
+        this.predEdge = new int[graph.getNodeCount()];
+        this.base = new int[graph.getNodeCount()];
+        computeRegions();
+    }
+
+    private void computeRegions() {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(predEdge, -1);
+        Arrays.fill(base, -1);
+
+        IndexedMinHeap heap = new IndexedMinHeap(graph.getNodeCount(), graph.getRanks());
+        for (int t : terminals) {
+            dist[t] = 0;
+            base[t] = t;
+            heap.insertOrDecrease(t, 0);
+        }
+        long settled = 0;
+        long heapOperations = terminals.length;
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled++;
+            heapOperations++;
+            double du = dist[u];
+            for (int slot = graph.getOffset(u), end = graph.getOffset(u + 1); slot < end; slot++) {
+                int v = graph.getNeighbour(slot);
+                double alt = du + graph.getSlotWeight(slot);
+                if (alt < dist[v]) {
+                    dist[v] = alt;
+                    predEdge[v] = graph.getAdjacentEdge(slot);
+                    base[v] = base[u];
+                    heap.insertOrDecrease(v, alt);
+                    heapOperations++;
+                }
+            }
+        }
+        Metrics.countSearch(settled, heapOperations);
+    }
+
+    //the cheapest bridge for every pair of neighbouring regions, ordered like the pairs in the complete terminal graph
+    public List<TerminalLink> getTerminalLinks() {
+        int[] terminalPosition = new int[graph.getNodeCount()];
+        Arrays.fill(terminalPosition, -1);
+        for (int i = 0; i < terminals.length; i++) {
+            terminalPosition[terminals[i]] = i;
+        }
+
+        Map<Long, Integer> bridges = new HashMap<>();
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            int u = graph.getEdgeSource(e);
+            int v = graph.getEdgeTarget(e);
+            if (base[u] == -1 || base[v] == -1 || base[u] == base[v])
+                continue;
+            int pu = terminalPosition[base[u]];
+            int pv = terminalPosition[base[v]];
+            long key = ((long) Math.min(pu, pv) << 32) | Math.max(pu, pv);
+            Integer best = bridges.get(key);
+            if (best == null || bridgeWeight(e) < bridgeWeight(best))
+                bridges.put(key, e);
+        }
+
+        List<Long> pairs = new ArrayList<>(bridges.keySet());
+        Collections.sort(pairs);
+        List<TerminalLink> terminalLinks = new ArrayList<>(pairs.size());
+        for (long key : pairs) {
+            int first = terminals[(int) (key >>> 32)];
+            int second = terminals[(int) key];
+            terminalLinks.add(new TerminalLink(first, second, bridgePath(bridges.get(key), first)));
+        }
+        return terminalLinks;
+    }
+
+    private double bridgeWeight(int e) {
+        return dist[graph.getEdgeSource(e)] + graph.getEdgeWeight(e) + dist[graph.getEdgeTarget(e)];
+    }
+
+    //terminal of the first region -> bridge edge -> terminal of the second region
+    private CompactPath bridgePath(int e, int first) {
+        int u = graph.getEdgeSource(e);
+        int v = graph.getEdgeTarget(e);
+        if (base[u] != first) {
+            int tmp = u;
+            u = v;
+            v = tmp;
+        }
+        List<Integer> edges = new ArrayList<>();
+        for (int x = u; predEdge[x] != -1; x = graph.getOtherEnd(predEdge[x], x)) {
+            edges.add(predEdge[x]);
+        }
+        Collections.reverse(edges);
+        edges.add(e);
+        for (int x = v; predEdge[x] != -1; x = graph.getOtherEnd(predEdge[x], x)) {
+            edges.add(predEdge[x]);
+        }
+        int[] path = new int[edges.size()];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = edges.get(i);
+        }
+        return new CompactPath(bridgeWeight(e), path);
+    }
+}